@@ -0,0 +1,253 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes snapshot checkpoints of the competition data in the background.
+ * Changed teams are tracked through the DATA_* and TEAM_* events, a
+ * checkpoint is written once the interval has passed or enough changes
+ * accumulated, whichever comes first, and only if something changed.
+ *
+ * A failed checkpoint leaves the previous ones untouched and its changes
+ * are kept for the next attempt.
+ *
+ * Only the teams that changed since the last checkpoint are copied out of
+ * the competition state (under the data lock), the copies of the others
+ * are reused. Encoding and file I/O happen afterwards without the lock.
+ * The newest checkpoint is NAME.snap, older ones are rotated to
+ * NAME.1.snap up to NAME.(KEEP-1).snap.
+ *
+ * @author wira
+ */
+public class Autosave implements EventHandler, Runnable {
+    public static final String NAME = "autosave";
+    public static final long DEFAULT_INTERVAL_MS = 60000;
+    public static final int DEFAULT_MUTATIONS = 50;
+    public static final int DEFAULT_KEEP = 5;
+
+    private final CompetitionState c;
+    private final File dir;
+    private final long intervalMs;
+    private final int mutationThreshold;
+    private final int keep;
+    private final Thread thread;
+    private EventBus.Subscription subscription;
+
+    // guarded by this
+    private Set<Integer> dirty = new HashSet<>();
+    private boolean allDirty = false;
+    private int mutations = 0;
+    private boolean stop = false;
+    private long checkpoints = 0;
+
+    // only touched by the autosave thread
+    private final Map<Integer, Snapshot.TeamData> copies = new HashMap<>();
+
+    public Autosave(CompetitionState c, File dir, long intervalMs,
+                    int mutationThreshold, int keep) {
+        this.c = c;
+        this.dir = dir;
+        this.intervalMs = intervalMs;
+        this.mutationThreshold = mutationThreshold;
+        this.keep = Math.max(1, keep);
+        thread = new Thread(this, "Autosave");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        Log.d(0, "Autosave: checkpoints to " + dir + " every " + intervalMs +
+                 " ms or " + mutationThreshold + " changes, keeping " + keep);
+        subscription = ControlCenter.getEventBus().subscribe("Autosave", this,
+                EventBus.DIRECT);
+        thread.start();
+    }
+
+    /**
+     * Stop the service, a last checkpoint is written if anything changed
+     */
+    public void stop() {
+        if(subscription != null) {
+            ControlCenter.getEventBus().unsubscribe(subscription);
+        }
+        synchronized(this) {
+            stop = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch(InterruptedException e) {
+            Log.err("Autosave.stop: " + e);
+        }
+    }
+
+    /**
+     * Ask for a checkpoint now instead of waiting for the interval
+     */
+    public synchronized void checkpointNow() {
+        mutations = Math.max(mutations, mutationThreshold);
+        notifyAll();
+    }
+
+    public File getFile(int generation) {
+        return new File(dir, NAME + (generation == 0 ? "" : "." + generation) +
+                             "." + Snapshot.EXTENSION);
+    }
+
+    public synchronized long getCheckpointCount() {
+        return checkpoints;
+    }
+
+    @Override
+    public void handle(Event e) {
+        switch(e.getID()) {
+            case UserEvent.SESSION_ATTEMPT_COMMITTED:
+            case UserEvent.DATA_ADDED:
+            case UserEvent.DATA_CHANGED:
+            case UserEvent.DATA_RECORD_EXPUNGED:
+            case UserEvent.TEAM_ADDED_ANNOTATION:
+            case UserEvent.TEAM_REMOVED_ANNOTATION:
+            case UserEvent.TEAM_CLEARED_ANNOTATION:
+            case UserEvent.TEAM_TIEBREAKER_CHANGED:
+                changed(e.getTeamNumber());
+                break;
+            case UserEvent.DATA_CLEARED:
+            case UserEvent.DATA_IMPORTED:
+                changed(-1);
+                break;
+        }
+    }
+
+    /**
+     * @param team number of the team that changed, -1 for all teams
+     */
+    private synchronized void changed(int team) {
+        if(team < 0) {
+            allDirty = true;
+        } else {
+            dirty.add(team);
+        }
+        if(++mutations >= mutationThreshold) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while(true) {
+            Set<Integer> changed;
+            boolean all;
+            boolean last;
+            synchronized(this) {
+                long deadline = System.currentTimeMillis() + intervalMs;
+                long now;
+                while(!stop && mutations < mutationThreshold &&
+                      (now = System.currentTimeMillis()) < deadline) {
+                    try {
+                        wait(deadline - now);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                last = stop;
+                if(mutations == 0 && !allDirty) {
+                    if(last) {
+                        return;
+                    }
+                    continue;
+                }
+                changed = dirty;
+                all = allDirty;
+                dirty = new HashSet<>();
+                allDirty = false;
+                mutations = 0;
+            }
+            checkpoint(changed, all);
+            if(last) {
+                return;
+            }
+        }
+    }
+
+    private void checkpoint(Set<Integer> changed, boolean all) {
+        long start = System.nanoTime();
+        Snapshot.Capture capture = Data.lock().read(() -> {
+            List<Snapshot.TeamData> list = new ArrayList<>();
+            for(Team t : c.getTeams()) {
+                Snapshot.TeamData copy = copies.get(t.getNumber());
+                if(all || copy == null || changed.contains(t.getNumber())) {
+                    copy = Snapshot.TeamData.of(t);
+                }
+                list.add(copy);
+            }
+            return new Snapshot.Capture(c, list);
+        });
+        long captured = System.nanoTime();
+        for(Snapshot.TeamData t : capture.getTeams()) {
+            copies.put(t.getNumber(), t);
+        }
+        // the new checkpoint is written completely before the older ones
+        // are rotated, a failed write leaves all of them in place
+        File next = new File(dir, NAME + ".new." + Snapshot.EXTENSION);
+        try {
+            if(!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("unable to create " + dir);
+            }
+            Snapshot.save(capture, next);
+            rotate();
+            Files.move(next.toPath(), getFile(0).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            synchronized(this) {
+                checkpoints++;
+            }
+            Log.d(1, "Autosave: checkpoint written, " +
+                     (all ? "all" : changed.size()) + " team(s) copied in " +
+                     (captured - start) / 1000 + " us, total " +
+                     (System.nanoTime() - start) / 1000000 + " ms");
+        } catch(IOException e) {
+            Log.err("Autosave: failed to write checkpoint to " + dir + ": " + e +
+                    ", retrying after the interval");
+            next.delete();
+            synchronized(this) {
+                dirty.addAll(changed);
+                allDirty |= all;
+                mutations = Math.max(mutations, 1);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if(keep > 1) {
+            getFile(keep - 1).delete();
+        }
+        for(int i = keep - 2; i >= 0; i--) {
+            File f = getFile(i);
+            if(f.exists() && !f.renameTo(getFile(i + 1))) {
+                throw new IOException("unable to rotate " + f);
+            }
+        }
+    }
+}
@@ -16,7 +16,9 @@
 package org.osumercury.controlcenter;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,32 +31,43 @@ public class CompetitionState {
     private final Map<Integer, Team> teamByID;
     private List<Team> teamsClassified;
     private List<Team> teamsDNF;
-    private SessionState session;
-    private boolean redFlagged;
-    private List<Callback> stateChangeHooks;
+    private final Map<String, Track> tracks;
+    private final Track defaultTrack;
+    private final Map<Callback, EventBus.Subscription> stateChangeHooks;
     private final List<String> championCriteria;
     private final List<String> classificationCriteria;
+    private final long championMask;
+    private final long classificationMask;
+    private final Map<Team, StandingsKey> standingsKeys;
+    private final RankTree<StandingsKey> classifiedIndex;
+    private final RankTree<StandingsKey> dnfIndex;
        
     private boolean sorted;    
+    private volatile int standingsVersion;
+    private volatile StandingsSnapshot standings;
+    private volatile Journal journal;
+    private volatile Journal.Mark loadedJournalMark;
         
     public static final int IDLE = -1;
     public static final int SETUP = 0;
     public static final int RUN = 1;
     public static final int POST_RUN = 2;
     
-    private int state;
-    
     public CompetitionState(Map<String, String> teamsMap,
                             List<String> teamsOrder,
                             String csvChampion, String csvClassification) {
-        stateChangeHooks = new ArrayList();
+        stateChangeHooks = new HashMap<>();
         teams = new ArrayList();
         teamByID = new HashMap();
         sorted = false;              
-        state = IDLE;
-        redFlagged = false;
+        tracks = new LinkedHashMap<>();
+        defaultTrack = new Track(this, Track.DEFAULT);
+        tracks.put(Track.DEFAULT, defaultTrack);
         this.championCriteria = new ArrayList<>();
         this.classificationCriteria = new ArrayList<>();
+        standingsKeys = new HashMap<>();
+        classifiedIndex = new RankTree<>(StandingsKey.ORDER);
+        dnfIndex = new RankTree<>(StandingsKey.ORDER);
         
         if(teamsMap == null) {
             Log.fatal(3, "CompetitionState: no teams section in config. file");
@@ -81,6 +94,11 @@ public class CompetitionState {
             }
         }
         
+        // criteria are interned first so that they get the lowest annotation
+        // IDs and fit in a mask
+        championMask = Team.getAnnotationMask(championCriteria);
+        classificationMask = Team.getAnnotationMask(classificationCriteria);
+        
         Team t;
         String[] tokens;
         for(String teamIDString : teamsOrder) {
@@ -112,6 +130,8 @@ public class CompetitionState {
                 }
                 teams.add(t);
                 teamByID.put(Integer.parseInt(teamIDString), t);
+                t.setCompetitionState(this);
+                updateStandings(t);
             } catch(Exception e) {
                 if(Log.debugLevel > 1) {
                     e.printStackTrace();
@@ -152,91 +172,253 @@ public class CompetitionState {
         return criteria;
     }
     
+    /**
+     * Record every change to the teams' data in the journal from now on,
+     * null stops journaling
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+    
+    public Journal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Remember how far into its journal the loaded data file was saved,
+     * null if it was saved without a journal
+     */
+    public void setLoadedJournalMark(Journal.Mark mark) {
+        loadedJournalMark = mark;
+    }
+    
+    public Journal.Mark getLoadedJournalMark() {
+        return loadedJournalMark;
+    }
+    
+    /**
+     * @return position of the attached journal, null if there is none.
+     *         Must be called with the data lock held (or inside
+     *         DataLock.read) to match the data
+     */
+    public Journal.Mark getJournalMark() {
+        Journal j = journal;
+        return j != null ? j.getMark() : null;
+    }
+    
+    /**
+     * @return the default track, the one controlled by the GUI
+     */
+    public Track getTrack() {
+        return defaultTrack;
+    }
+    
+    /**
+     * @return the track with the given ID, or null if there is none
+     */
+    public Track getTrack(String id) {
+        synchronized(tracks) {
+            return tracks.get(id);
+        }
+    }
+    
+    public Track addTrack(String id) {
+        synchronized(tracks) {
+            Track track = tracks.get(id);
+            if(track == null) {
+                track = new Track(this, id);
+                tracks.put(id, track);
+                Log.d(0, "CompetitionState.addTrack: " + id);
+            }
+            return track;
+        }
+    }
+    
+    /**
+     * Remove an idle track, the default track can not be removed
+     * 
+     * @return true if the track was removed
+     */
+    public boolean removeTrack(String id) {
+        synchronized(tracks) {
+            Track track = tracks.get(id);
+            if(track == null || track.isDefault() || track.getState() != IDLE) {
+                return false;
+            }
+            tracks.remove(id);
+            Log.d(0, "CompetitionState.removeTrack: " + id);
+            return true;
+        }
+    }
+    
+    public List<Track> getTracks() {
+        synchronized(tracks) {
+            return new ArrayList<>(tracks.values());
+        }
+    }
+    
+    /**
+     * @return the track currently running a session for the team, or null
+     */
+    public Track getTrackOf(Team t) {
+        for(Track track : getTracks()) {
+            if(track.getActiveTeam() == t) {
+                return track;
+            }
+        }
+        return null;
+    }
+    
     public void newSession(Team t, int attempts, long setupDuration, long windowDuration) {
-        session = new SessionState(t, attempts, setupDuration, windowDuration);        
+        defaultTrack.newSession(t, attempts, setupDuration, windowDuration);
     }
     
     public SessionState getSession() {
-        return session;
+        return defaultTrack.getSession();
     }
     
-    public void addStateChangeHook(Callback hook) {
-        stateChangeHooks.add(hook);
+    /**
+     * State change hooks are DIRECT subscribers of STATE_TRANSITION on the
+     * default track, they run in the thread calling setState and complete
+     * before any of the STATE_CHANGE_* events are published
+     */
+    public synchronized void addStateChangeHook(Callback hook) {
+        stateChangeHooks.put(hook, ControlCenter.getEventBus().subscribe(
+                "StateChangeHook", (e) -> {
+                    if(e.getID() == UserEvent.STATE_TRANSITION &&
+                            e.isOnDefaultTrack()) {
+                        hook.callback(this);
+                    }
+                }, EventBus.DIRECT));
     }
     
-    public void removeStateChangeHooks(Callback hook) {
-        stateChangeHooks.remove(hook);
+    public synchronized void removeStateChangeHooks(Callback hook) {
+        ControlCenter.getEventBus().unsubscribe(stateChangeHooks.remove(hook));
     }
     
-    public synchronized void sort() {
-        Log.d(3, "CompetitionState.sort: sorting teams");
-        teamsClassified = new ArrayList();
-        teamsDNF = new ArrayList();
-        for(Team t : teams) {
-            if(t.getBestScore() != null) {
-                boolean classified = true;
-                for(String criterion : classificationCriteria) {
-                    if(!t.hasAnnotation(criterion)) {
-                        classified = false;
-                    }
-                }
-                if(classified) {
-                    teamsClassified.add(t);
-                } else {
-                    teamsDNF.add(t);
-                }
-            } else {
-                teamsDNF.add(t);
+    /**
+     * Re-key a team in the standings index after its scores, tiebreaker or
+     * annotations have changed. This is O(log n), Team calls it on every
+     * mutation so the index never has to be rebuilt from scratch.
+     */
+    public synchronized void updateStandings(Team t) {
+        StandingsKey key = standingsKeys.get(t);
+        if(key != null) {
+            (key.classified ? classifiedIndex : dnfIndex).remove(key);
+        }
+        int order = key != null ? key.order : teams.indexOf(t);
+        key = new StandingsKey(t, order, isTeamClassified(t));
+        (key.classified ? classifiedIndex : dnfIndex).insert(key);
+        standingsKeys.put(t, key);
+        sorted = false;
+        standingsVersion++;
+    }
+    
+    /**
+     * Get an immutable snapshot of the competition data. The snapshot is
+     * rebuilt on the first call after a change and then shared by every
+     * reader until the next change, so the common case is a volatile read.
+     * Rebuilding is an optimistic read of the data, it only takes the data
+     * lock if a writer got in while the snapshot was being built.
+     */
+    public StandingsSnapshot getStandings() {
+        StandingsSnapshot s = standings;
+        if(s != null && s.getVersion() == standingsVersion) {
+            return s;
+        }
+        s = Data.lock().read(this::buildStandings);
+        synchronized(this) {
+            if(standings == null || standings.getVersion() < s.getVersion()) {
+                standings = s;
+                Log.d(3, "CompetitionState.getStandings: published " +
+                         "version " + s.getVersion());
             }
         }
-        
-        // teams that are classified are sorted by their final best scores
-        teamsClassified.sort((Team a, Team b) -> (int) (a.compareTo(b)));
-        
-        // we sort DNF teams by a tiebreaker value, whatever that is
-        teamsDNF.sort((Team a, Team b) -> a.compareTiebreaker(b));
-        
+        return s;
+    }
+    
+    private synchronized StandingsSnapshot buildStandings() {
+        StandingsSnapshot s = standings;
+        if(s == null || s.getVersion() != standingsVersion) {
+            sort();
+            s = new StandingsSnapshot(this, standingsVersion);
+        }
+        return s;
+    }
+    
+    public synchronized void sort() {
+        if(sorted) {
+            return;
+        }
+        Log.d(3, "CompetitionState.sort: sorting teams");
+        teamsClassified = toTeams(classifiedIndex.toList());
+        teamsDNF = toTeams(dnfIndex.toList());
         sorted = true;
-        Log.d(3, "CompetitionState.sort: sorting done");
+        Log.d(3, "CompetitionState.sort: sorting done, score cache hits=" +
+                 Score.getCacheHits() + " misses=" + Score.getCacheMisses());
     }
     
-    public void setState(int state) {
-        this.state = state;
-        for(Callback hook : stateChangeHooks) {
-            hook.callback(this);
+    private static List<Team> toTeams(List<StandingsKey> keys) {
+        List<Team> list = new ArrayList<>(keys.size());
+        for(StandingsKey key : keys) {
+            list.add(key.team);
+        }
+        return list;
+    }
+    
+    private boolean isTeamClassified(Team t) {
+        if(t.getBestScore() == null) {
+            return false;
+        }
+        if(classificationMask != -1) {
+            return t.hasAnnotations(classificationMask);
         }
-        switch(state) {
-            case IDLE:
-                ControlCenter.triggerEvent(UserEvent.STATE_CHANGE_IDLE, null);
-                break;
-            case SETUP:
-                Object[] params = {session.getMaxAttempts(), 
-                                   session.getSetupDuration()/1000,
-                                   session.getWindowDuration()/1000};
-                ControlCenter.triggerEvent(UserEvent.STATE_CHANGE_SETUP, params);
-                break;
-            case RUN:
-                ControlCenter.triggerEvent(UserEvent.STATE_CHANGE_RUN, null);
-                break;
-            case POST_RUN:
-                ControlCenter.triggerEvent(UserEvent.STATE_CHANGE_POSTRUN, null);                
-                break;
+        for(String criterion : classificationCriteria) {
+            if(!t.hasAnnotation(criterion)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return the 1-based classification rank of the team, or -1 if the
+     *         team is not classified
+     */
+    public synchronized int getRank(Team t) {
+        StandingsKey key = standingsKeys.get(t);
+        if(key == null || !key.classified) {
+            return -1;
         }
+        return classifiedIndex.rank(key) + 1;
+    }
+    
+    public synchronized int getClassifiedCount() {
+        return classifiedIndex.size();
+    }
+    
+    /**
+     * Read a page of the classification starting at the 1-based rank
+     * rankStart without materializing the rest of the standings
+     */
+    public synchronized List<Team> getSortedClassifiedTeams(int rankStart, int count) {
+        return toTeams(classifiedIndex.range(rankStart-1, count));
+    }
+    
+    public void setState(int state) {
+        defaultTrack.setState(state);
     }
     
     public int getState() {
-        return state;
+        return defaultTrack.getState();
     }
     
     public void setRedFlag(boolean b) {
-        redFlagged = b;
-        ControlCenter.triggerEvent(b ?
-                    UserEvent.SESSION_REDFLAGGED : UserEvent.SESSION_GREENFLAGGED,
-                    null);
+        defaultTrack.setRedFlag(b);
     }
     
     public boolean redFlagged() {
-        return redFlagged;
+        return defaultTrack.redFlagged();
     }
     
     public List<Team> getTeams() {
@@ -256,6 +438,9 @@ public class CompetitionState {
     }
     
     public boolean isTeamEligibleForChampionship(Team t) {
+        if(championMask != -1) {
+            return t.hasAnnotations(championMask);
+        }
         for(String criterion : championCriteria) {
             if(!t.hasAnnotation(criterion)) {
                 return false;
@@ -267,4 +452,34 @@ public class CompetitionState {
     public boolean isSorted() {
         return sorted;
     }
+    
+    /**
+     * Snapshot of the values a team was ordered by when it was last put
+     * into the standings index. Classified teams are ordered by best score
+     * and DNF teams by tiebreaker, ties are broken by the team order in
+     * the config. file (like the stable sort this replaces). Values are
+     * compared to Team.SORT_COMPARE_PRECISION like Team.compareTo does, so
+     * scores that only differ beyond that are ties.
+     */
+    private static class StandingsKey {
+        static final Comparator<StandingsKey> ORDER = (a, b) -> {
+            int c = Long.compare(a.value, b.value);
+            return c != 0 ? c : Integer.compare(a.order, b.order);
+        };
+        
+        final Team team;
+        final int order;
+        final boolean classified;
+        final long value;
+        
+        StandingsKey(Team team, int order, boolean classified) {
+            double v = classified ? team.getBestScore().getScore() :
+                                    team.getTiebreaker();
+            this.team = team;
+            this.order = order;
+            this.classified = classified;
+            v = Team.getSortOrder() == Team.SORT_ASCENDING ? v : -v;
+            this.value = Math.round(v * Team.SORT_COMPARE_PRECISION);
+        }
+    }
 }
@@ -15,27 +15,91 @@
  */
 package org.osumercury.controlcenter;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.io.*;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipEntry;
-import java.nio.file.Files;
-import java.nio.file.Path;
 
 /**
  *
  * @author wira
  */
 public class Config {
-    private static HashMap<String, HashMap<String, String>> sections;
-    private static HashMap<String, ArrayList<String>> orderedKeys;
+    private static final Pattern SECTION_HEADER = Pattern.compile("\\[(.*?)\\]",
+                                                                  Pattern.DOTALL);
+    private static volatile Map<String, Section> sections = new HashMap<>();
     private static File CONFIG_FILE;
-    private static String CONFIG_STRING;
-    private static String TMP_DIR;
+    private static volatile String CONFIG_STRING;
+    private static volatile int CONFIG_HASH;
+    private static ResourceProvider RESOURCES;
+    
+    /**
+     * An immutable section of the configuration. Keys are interned and
+     * kept in the order they appear in the file.
+     */
+    public static final class Section {
+        private final String name;
+        private final String[] keys;
+        private final List<String> keyList;
+        private final Map<String, String> values;
+        private final Map<String, Integer> index;
+        
+        private Section(String name, LinkedHashMap<String, String> entries) {
+            this.name = name;
+            keys = entries.keySet().toArray(new String[0]);
+            keyList = Collections.unmodifiableList(Arrays.asList(keys));
+            values = Collections.unmodifiableMap(new HashMap<>(entries));
+            Map<String, Integer> idx = new HashMap<>();
+            for(int i = 0; i < keys.length; i++) {
+                idx.put(keys[i], i);
+            }
+            index = Collections.unmodifiableMap(idx);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * @return keys in their original order, the array is shared and
+         *         must not be modified
+         */
+        public String[] getKeyArray() {
+            return keys;
+        }
+        
+        public List<String> getKeys() {
+            return keyList;
+        }
+        
+        public Map<String, String> getValues() {
+            return values;
+        }
+        
+        public boolean containsKey(String key) {
+            return values.containsKey(key);
+        }
+        
+        public String get(String key) {
+            return values.get(key);
+        }
+        
+        /**
+         * @return position of the key in the section, or -1
+         */
+        public int indexOf(String key) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+        
+        public int size() {
+            return keys.length;
+        }
+    }
     
     public static File getConfigFile() {
         return CONFIG_FILE;
@@ -45,8 +109,11 @@ public class Config {
         return CONFIG_STRING;
     }
     
-    public static String getTmpDir() {
-        return TMP_DIR;
+    /**
+     * @return hash of the configuration text, computed once when parsed
+     */
+    public static int getConfigHash() {
+        return CONFIG_HASH;
     }
     
     public static String getConfigFileParent() {
@@ -59,25 +126,16 @@ public class Config {
 
     public static boolean load(String f, boolean zip) {
         if(zip) {
-            f = loadZip(f);  
-            if(f == null) {
-                return false;
-            }
+            return loadZip(f);
         }
         
         try {            
             CONFIG_FILE = new File(f);            
             Log.d(0, "Config.load: " + CONFIG_FILE.getAbsolutePath());
-            StringBuilder str = new StringBuilder();
-            InputStreamReader r = new InputStreamReader(
-                    new FileInputStream(CONFIG_FILE), "UTF-8");
-            char[] buf = new char[4096];
-            int nread;
-            while((nread = r.read(buf)) != -1) {
-                str.append(buf, 0, nread);
-            }
-            r.close();
-            return parse(str.toString());
+            String str = read(new FileInputStream(CONFIG_FILE));
+            setResources(new DirectoryResourceProvider(
+                    new File(getConfigFileParent())));
+            return parse(str);
         } catch(IOException ioe) {
             System.err.println("Config.load: failed to parse " + f);
             if(Log.debugLevel > 0) {
@@ -87,17 +145,34 @@ public class Config {
         }
     }    
     
+    private static String read(InputStream in) throws IOException {
+        StringBuilder str = new StringBuilder();
+        try(InputStreamReader r = new InputStreamReader(in, "UTF-8")) {
+            char[] buf = new char[4096];
+            int nread;
+            while((nread = r.read(buf)) != -1) {
+                str.append(buf, 0, nread);
+            }
+        }
+        return str.toString();
+    }
+    
+    /**
+     * Parse configuration text. Sections are built into new immutable
+     * Section objects and published together at the end, sections of an
+     * earlier parse that are not redefined are kept.
+     */
     public static boolean parse(String str) {
-        CONFIG_STRING = str;
         String lines[] = str.split("\\r?\\n");
-        if(sections == null || sections.isEmpty()) {
-            sections = new HashMap();
-            orderedKeys = new HashMap();
-            sections.put("GLOBAL", new HashMap<>());
-            orderedKeys.put("GLOBAL", new ArrayList<>());
+        Map<String, LinkedHashMap<String, String>> parsed = new LinkedHashMap<>();
+        LinkedHashMap<String, String> cur = new LinkedHashMap<>();
+        Section global = sections.get("GLOBAL");
+        if(global != null) {
+            for(String key : global.getKeyArray()) {
+                cur.put(key, global.get(key));
+            }
         }
-        HashMap curSection = sections.get("GLOBAL");
-        ArrayList curList = orderedKeys.get("GLOBAL");
+        parsed.put("GLOBAL", cur);
         String[] tokens;
         
         for(String l : lines) {
@@ -106,92 +181,119 @@ public class Config {
                 if(l.startsWith("#") || l.equals("")) {
                     continue;
                 }
-                Pattern p = Pattern.compile("\\[(.*?)\\]", Pattern.DOTALL);
-                Matcher m = p.matcher(l);
-                if(m.matches()) {
+                if(SECTION_HEADER.matcher(l).matches()) {
                     Log.d(1, "Config.parse: found section -> " + l);
-                    curSection = new HashMap();
-                    curList = new ArrayList();
-                    sections.put(l.substring(1, l.length()-1), curSection);
-                    orderedKeys.put(l.substring(1, l.length()-1), curList);
+                    cur = new LinkedHashMap<>();
+                    parsed.put(l.substring(1, l.length()-1).intern(), cur);
                     continue;
                 }
                 tokens = l.split("#");
                 tokens = tokens[0].split("=");
-                curSection.put(tokens[0], tokens.length > 1 ? tokens[1].trim() : null);
-                curList.add(tokens[0]);
+                cur.put(tokens[0].intern(), tokens.length > 1 ? tokens[1].trim() : null);
             } catch(Exception e) {
                 System.err.println("Config.parse: failed to parse \"" +
                         l + "\"");
                 return false;
             }
         }
+        
+        Map<String, Section> built = new HashMap<>(sections);
+        for(Map.Entry<String, LinkedHashMap<String, String>> e : parsed.entrySet()) {
+            built.put(e.getKey(), new Section(e.getKey(), e.getValue()));
+        }
+        sections = Collections.unmodifiableMap(built);
+        CONFIG_STRING = str;
+        CONFIG_HASH = str.hashCode();
         return true;
     }
     
-    public static String loadZip(String f) {
-        Path tmpDir;
+    /**
+     * Load the .merccc file of a zip archive. The archive stays open as the
+     * resource provider and entries are read from it when needed, nothing
+     * is extracted.
+     */
+    public static boolean loadZip(String f) {
+        Log.d(0, "Config.loadZip: " + f);
+        ZipResourceProvider zip;
         try {
-            tmpDir = Files.createTempDirectory(null);
+            zip = ZipResourceProvider.open(new File(f));
         } catch(IOException ioe) {
-            System.err.println("Config.loadZip: unable to create temporary" +
-                    " path");
-            return null;
+            System.err.println("Config.loadZip: unable to open " + f);
+            System.err.println("Config.loadZip: " + ioe.toString());
+            return false;
         }
-        TMP_DIR = tmpDir.toAbsolutePath().toString();
-        Log.d(0, "Config.loadZip: " + f);
-        Log.d(0, "Config.loadZip: tmpDir=" + tmpDir.toAbsolutePath());
-
+        
         try {
-            String configPath = null;
-            ZipFile zip = new ZipFile(new File(f));
-            ZipEntry z;
-            InputStream r;
-            File out;
-            FileOutputStream w;
-            byte[] buf = new byte[4096];
-            int nread;
-            Enumeration<? extends ZipEntry> entries = zip.entries();
-            while(entries.hasMoreElements()) {
-                z = entries.nextElement();
-                if(z.getName().endsWith(".merccc")) {
-                    configPath = z.getName();
-                }
-                r = zip.getInputStream(z);
-                out = new File(TMP_DIR + File.separatorChar + z.getName());
-                if(z.isDirectory()) {
-                    out.mkdir();
-                } else {
-                    w = new FileOutputStream(out);
-                    while((nread = r.read(buf)) != -1) {
-                        w.write(buf, 0, nread);
-                    }
-                    w.close();
-                }
-                r.close();
-            }
-            zip.close();
-            
+            String configPath = zip.find(".merccc");
             if(configPath == null) {
                 System.err.println("Config.loadZip: .merccc file not found in " +
                         "the archive");
-                return null;
+                zip.close();
+                return false;
             }
-            return TMP_DIR + File.separatorChar + configPath;
+            CONFIG_FILE = new File(f, configPath);
+            Log.d(0, "Config.loadZip: config=" + configPath);
+            String str = read(zip.open(configPath));
+            int slash = configPath.lastIndexOf('/');
+            setResources(slash < 0 ? zip :
+                         zip.resolve(configPath.substring(0, slash)));
+            return parse(str);
         } catch(IOException ioe) {
             System.err.println("Config.loadZip: read I/O exception");
             System.err.println("Config.loadZip: " + ioe.toString());
-            return null;
+            try {
+                zip.close();
+            } catch(IOException e) { }
+            return false;
         }        
     }
     
+    private static synchronized void setResources(ResourceProvider r) {
+        closeResources();
+        RESOURCES = r;
+    }
+    
+    /**
+     * @return files next to the configuration file, in its directory or
+     *         in the zip archive it was loaded from
+     */
+    public static synchronized ResourceProvider getResources() {
+        if(RESOURCES == null) {
+            return new DirectoryResourceProvider(new File(getConfigFileParent()));
+        }
+        return RESOURCES;
+    }
+    
+    public static synchronized void closeResources() {
+        if(RESOURCES != null) {
+            try {
+                RESOURCES.close();
+            } catch(IOException ioe) {
+                Log.err("Config.closeResources: " + ioe);
+            }
+            RESOURCES = null;
+        }
+    }
+    
     public static boolean hasSection(String key) {
         return sections.containsKey(key);
     }
     
+    /**
+     * @return the parsed section, or null if it does not exist
+     */
+    public static Section section(String key) {
+        return sections.get(key);
+    }
+    
     public static String[] getSection(String key) {
-        if(sections.containsKey(key)) {
-            return (String[]) sections.get(key).values().toArray(new String[0]);
+        Section section = sections.get(key);
+        if(section != null) {
+            String[] values = new String[section.size()];
+            for(int i = 0; i < values.length; i++) {
+                values[i] = section.get(section.keys[i]);
+            }
+            return values;
         }
         
         Log.d(1, "Config.getSection: \"" + key + "\" section" +
@@ -199,9 +301,10 @@ public class Config {
         return null;
     }
     
-    public static HashMap<String, String> getSectionAsMap(String key) {
-        if(sections.containsKey(key)) {
-            return sections.get(key);
+    public static Map<String, String> getSectionAsMap(String key) {
+        Section section = sections.get(key);
+        if(section != null) {
+            return section.getValues();
         }
         
         Log.d(1, "Config.getSectionAsMap: \"" + key +
@@ -210,49 +313,37 @@ public class Config {
     }
     
     public static String getValue(String section, String key) {
-        if(!sections.containsKey(section)) {
+        Section s = sections.get(section);
+        if(s == null) {
             Log.d(1, "Config.getValue: \"" + section +
                 "\" section not found.");
             return null;
         }
         
-        if(!sections.get(section).containsKey(key)) {
+        if(!s.containsKey(key)) {
             Log.d(1, "Config.getValue: No \"" + key +
                 "\" entry in section \"" + section + "\"");
             return null;
         }
         
-        return sections.get(section).get(key);
+        return s.get(key);
     }
     
-    public static ArrayList<String> getKeysInOriginalOrder(String section) {
-        return orderedKeys.get(section);
+    /**
+     * @return unmodifiable list of the section's keys in the order they
+     *         appear in the file, or null if there is no such section
+     */
+    public static List<String> getKeysInOriginalOrder(String section) {
+        Section s = sections.get(section);
+        return s == null ? null : s.getKeys();
     }
     
-    public static boolean deleteDirectory(String path) {
-        File dir = new File(path);
-        if(!dir.exists() || !dir.isDirectory()) {
-            Log.d(0, "Config.deleteDirectory: " + path + " does not exist or" +
-                    " is not a directory");
-            return false;
-        }
-        File[] contents = dir.listFiles();
-        for(File f : contents) {
-            if(f.isDirectory()) {
-                if(!deleteDirectory(f.getAbsolutePath())) {
-                    Log.d(0, "Config.deleteDirectory: failed to delete " +
-                            f.getAbsolutePath());
-                    return false;
-                }
-            } else {
-                if(!f.delete()) {
-                    Log.d(0, "Config.deleteDirectory: failed to delete " +
-                            f.getAbsolutePath());
-                    return false;
-                }
-            }
-        }
-        
-        return dir.delete();
+    /**
+     * @return the section's keys in their original order (shared, do not
+     *         modify), or null if there is no such section
+     */
+    public static String[] getKeyArray(String section) {
+        Section s = sections.get(section);
+        return s == null ? null : s.getKeyArray();
     }
 }
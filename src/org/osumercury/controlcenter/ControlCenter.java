@@ -15,7 +15,8 @@
  */
 package org.osumercury.controlcenter;
 
-import org.osumercury.controlcenter.gui.RefreshThread;
+import org.osumercury.controlcenter.gui.FrameScheduler;
+import org.osumercury.controlcenter.gui.AssetCache;
 import org.osumercury.controlcenter.gui.Assets;
 import org.osumercury.controlcenter.gui.DisplayFrame;
 import org.osumercury.controlcenter.gui.ControlFrame;
@@ -34,7 +35,7 @@ import com.beust.jcommander.*;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -51,6 +52,21 @@ public class ControlCenter {
     @Parameter(names = { "-l", "--load" })
     private String dataFile = null;
     
+    @Parameter(names = { "-j", "--journal" })
+    private String journalFile = null;
+    
+    @Parameter(names = { "-a", "--autosave" })
+    private String autosaveDir = null;
+    
+    @Parameter(names = { "--autosave-interval" })
+    private Long autosaveIntervalSecs = Autosave.DEFAULT_INTERVAL_MS / 1000;
+    
+    @Parameter(names = { "--autosave-changes" })
+    private Integer autosaveChanges = Autosave.DEFAULT_MUTATIONS;
+    
+    @Parameter(names = { "--autosave-keep" })
+    private Integer autosaveKeep = Autosave.DEFAULT_KEEP;
+    
     @Parameter(names = { "-d", "--debug" })
     private Integer debug = 0;
     
@@ -117,6 +133,16 @@ public class ControlCenter {
     @Parameter(names = { "--headless" })
     private boolean headless = false;
     
+    @Parameter(names = { "--warm-assets" })
+    private boolean warmAssets = false;
+    
+    @Parameter(names = { "--asset-cache" })
+    private String assetCacheDir = null;
+    
+    @Parameter(names = { "--no-asset-cache" })
+    private boolean noAssetCache = false;
+    
+    private ResourceProvider resources;
     private File resourcePath;
     
     private CompetitionState competition;
@@ -124,7 +150,8 @@ public class ControlCenter {
     private ControlFrame control;    
     private ThumbnailFrame thumb;
     private DisplayOptionsFrame displayOptions;
-    private RefreshThread refresh;
+    private FrameScheduler scheduler;
+    private Autosave autosave;
     private SocketInterface socket;
     private SocketInterface loopback;
     private int clientDisplayNumber = -1;
@@ -134,8 +161,7 @@ public class ControlCenter {
     
     private static JCommander jc;
     public static ControlCenter cc;
-    private static ArrayList<ScoreChangedCallback> scoreChangedHooks = new ArrayList<>();
-    private static ArrayList<UserEvent> userEventHooks = new ArrayList<>();
+    private static final EventBus eventBus = new EventBus();
     
     public static long beginTime = -1;
     public static boolean SOUND_DISABLED = false;
@@ -326,22 +352,48 @@ public class ControlCenter {
         }
         
         if(dataFile != null) {
-            Data.loadCSV(competition, dataFile);
+            if(Snapshot.isSnapshot(new File(dataFile))) {
+                try {
+                    Snapshot.load(competition, new File(dataFile));
+                } catch(IOException e) {
+                    Log.fatal(57, "Failed to load snapshot " + dataFile + ": " +
+                            e.getMessage());
+                }
+            } else {
+                Data.loadCSV(competition, dataFile);
+            }
+        }
+        
+        // the import itself is not journaled. Data saved while a journal
+        // was attached (snapshots, autosaves, CSV) remembers how far the
+        // journal got, only the records after that are replayed onto it
+        if(journalFile != null) {
+            try {
+                competition.setJournal(Journal.open(competition,
+                        new File(journalFile), Journal.DEFAULT_BATCH_WINDOW_MS));
+            } catch(Exception e) {
+                Log.fatal(56, "Failed to open journal " + journalFile + ": " +
+                        e.getMessage());
+            }
+        }
+        
+        if(autosaveDir != null) {
+            autosave = new Autosave(competition, new File(autosaveDir),
+                    autosaveIntervalSecs * 1000, autosaveChanges, autosaveKeep);
+            autosave.start();
         }
         
         String dirParent = Config.getConfigFileParent();
-        String resourceDir = (dirParent != null ? dirParent + File.separatorChar : "") + 
-                Config.getValue("system", "resourcedir");
+        String resourceDir = Config.getValue("system", "resourcedir");
         
         if(resourceDir != null) {
-            resourcePath = new File(resourceDir);
+            setResources(Config.getResources().resolve(resourceDir));
         }
         
         // graphical UI
         if(!headless) {
-            Log.d(0, "Checking " + resourceDir);
-            if(!fetchConfig && (resourceDir == null || !(new File(resourceDir)).exists() ||
-                    !(new File(resourceDir).isDirectory()))) {
+            Log.d(0, "Checking " + resources);
+            if(!fetchConfig && (resources == null || !resources.isDirectory())) {
                 JOptionPane.showMessageDialog(null, "Resource directory is not specified or " + 
                         "was not found", "Resource directory", JOptionPane.ERROR_MESSAGE);
                 JFileChooser fileChooser = new JFileChooser();
@@ -349,13 +401,18 @@ public class ControlCenter {
                 fileChooser.setCurrentDirectory(new File(dirParent));
                 fileChooser.showOpenDialog(null);
                 if(fileChooser.getSelectedFile() != null) {
-                    resourceDir = fileChooser.getSelectedFile().getAbsolutePath();
-                    resourcePath = new File(resourceDir);
+                    setResources(new DirectoryResourceProvider(
+                            fileChooser.getSelectedFile().getAbsoluteFile()));
                 }
             }
             
+            if(!noAssetCache) {
+                AssetCache.setDirectory(assetCacheDir != null ?
+                        new File(assetCacheDir) : AssetCache.getDefaultDirectory(),
+                        AssetCache.DEFAULT_MAX_BYTES);
+            }
             Assets.loadInternalAssets();
-            Assets.load(resourceDir);
+            Assets.load(resources);
             if(!noTheme) {
                 if(classicDigits) {
                     Assets.setDigitsStyle(Assets.DIGITS_CLASSIC,
@@ -397,18 +454,18 @@ public class ControlCenter {
                 control = new ControlFrame(this);
                 thumb = new ThumbnailFrame(this);
                 displayOptions = new DisplayOptionsFrame(this);
-                refresh = new RefreshThread(this, refreshRateMs);
+                scheduler = new FrameScheduler(this, refreshRateMs);
                 SwingUtilities.invokeLater(() -> {
                     control.init();          
                     display.init();
                     control.refreshDataView();
                     displayOptions.init();
-                    refresh.start();
+                    scheduler.start();
                 });               
             } else {
                 // display client mode (no control window)
                 display = new DisplayFrame(this, sysFont);
-                refresh = new RefreshThread(this, refreshRateMs);
+                scheduler = new FrameScheduler(this, refreshRateMs);
                 DisplayClient.connect(this, controlHost, controlPort,
                         fetchConfig, clientDisplayNumber, lockMode);
             }
@@ -454,8 +511,16 @@ public class ControlCenter {
         return displayOptions;
     }
     
-    public RefreshThread getRefreshThread() {
-        return refresh;
+    public Autosave getAutosave() {
+        return autosave;
+    }
+    
+    public boolean isWarmAssets() {
+        return warmAssets;
+    }
+    
+    public FrameScheduler getFrameScheduler() {
+        return scheduler;
     }
     
     public SocketInterface getSocketHandle() {
@@ -474,39 +539,29 @@ public class ControlCenter {
         loopback = s;
     }
     
-    public static void addScoreChangedHook(ScoreChangedCallback c) {
-        scoreChangedHooks.add(c);
-        Log.d(2, "Score Changed Hook Added - Total is " + scoreChangedHooks.size());
-    }
-    
-    public static void removeScoreChangedCallback(ScoreChangedCallback c) {
-        scoreChangedHooks.remove(c);
-        Log.d(2, "Score Changed Hook Removed - Total is " + scoreChangedHooks.size());
+    public static EventBus getEventBus() {
+        return eventBus;
     }
     
-    public static void addUserEventHook(UserEvent c) {
-        userEventHooks.add(c);
-        Log.d(2, "User Event Hook Added - Total is " + userEventHooks.size());
+    public static void triggerEvent(Event e) {
+        Log.d(2, "triggerEvent: " + e.getID());
+        eventBus.publish(e);
     }
     
-    public static void removeUserEventHook(UserEvent c) {
-        userEventHooks.remove(c);
-        Log.d(2, "User Event Hook Removed - Total is " + userEventHooks.size());
+    private void setResources(ResourceProvider r) {
+        resources = r;
+        resourcePath = r instanceof DirectoryResourceProvider ?
+                ((DirectoryResourceProvider) r).getRoot() : null;
     }
     
-    public static void triggerEvent(int id, Object param) {
-        Log.d(2, "triggerEvent: " + id);
-        for(UserEvent ue : userEventHooks) {
-            ue.callback(id, param);
-        }
-    }
-    
-    public static void triggerScoreChangeEvent(String key, int id, String val) {
-        for(ScoreChangedCallback c : scoreChangedHooks) {
-            c.callback(key, id, val);
-        }
+    public ResourceProvider getResources() {
+        return resources;
     }
     
+    /**
+     * @return the resource directory, or null if the resources are not
+     *         in a directory on disk (e.g. in a zip archive)
+     */
     public File getResourcePath() {
         return resourcePath;
     }
@@ -518,13 +573,6 @@ public class ControlCenter {
     
     public synchronized static void cleanup()  {
         Log.d(0, "Cleanup");
-        if(Config.getTmpDir() != null) {
-            Log.d(0, "Deleting " + Config.getTmpDir());
-            if(!Config.deleteDirectory(Config.getTmpDir())) {
-                System.err.println("Failed to delete directory");
-            }
-        }
-        
         if(cc.getSocketHandle() != null) {
             cc.getSocketHandle().close();
         }
@@ -533,9 +581,20 @@ public class ControlCenter {
             cc.getLoopbackSocketHandle().close();
         }
         
-        if(cc.getRefreshThread() != null) {
-            cc.getRefreshThread().stopThread();
+        if(cc.getFrameScheduler() != null) {
+            cc.getFrameScheduler().stopThread();
         }
+        
+        if(cc.getAutosave() != null) {
+            cc.getAutosave().stop();
+        }
+        
+        if(cc.getCompetitionState() != null &&
+                cc.getCompetitionState().getJournal() != null) {
+            cc.getCompetitionState().getJournal().close();
+        }
+        
+        Config.closeResources();
     }
     
     public static void printHelp() {
@@ -552,7 +611,15 @@ public class ControlCenter {
                  "\n"+
                  "additional options:\n"+
                  "  -f, --format             print configuration file format to console and quit\n"+
-                 "  -l, --load FILE          load saved .csv data from a previous scoring session\n"+
+                 "  -l, --load FILE          load saved .csv data or a binary snapshot from a\n"+
+                 "                           previous scoring session\n"+
+                 "  -j, --journal FILE       replay FILE on startup and append every change of the\n"+
+                 "                           data to it, changes are replayed on top of -l\n"+
+                 "  -a, --autosave DIR       write background checkpoints of the data to DIR\n"+
+                 "      --autosave-interval SECONDS\n"+
+                 "                           time between checkpoints (default: 60)\n"+
+                 "      --autosave-changes N write a checkpoint early after N changes (default: 50)\n"+
+                 "      --autosave-keep K    number of checkpoints to keep (default: 5)\n"+
                  "      --help               display this help message\n"+
                  "      --about              display information about the software\n"+
                  "      --localization       display information about text localization\n"+
@@ -563,8 +630,13 @@ public class ControlCenter {
                  "  -m, --nosound            disable all audio playback\n"+
                  "  -t, --notheme            ignore user's theme defined in the configuration\n"+
                  "  -d, --debug LEVEL        set program verbosity for debugging\n"+
-                 "  -r, --refreshrate TIME   set display refresh rate in milliseconds\n"+
+                 "  -r, --refreshrate TIME   set the shortest time between frames in milliseconds\n"+
                  "      --rendertime         display the time it took to render a frame\n"+
+                 "      --warm-assets        decode the images used by the display in parallel\n"+
+                 "                           at startup instead of on first use\n"+
+                 "      --asset-cache DIR    keep scaled images in DIR across restarts\n"+
+                 "                           (default: ~/.merccc/cache)\n"+
+                 "      --no-asset-cache     do not cache scaled images on disk\n"+
                  "      --client             information on using the client mode\n"+
                  "  -g, --client-gui         GUI to setup client mode connection\n"+
                  "\n"+
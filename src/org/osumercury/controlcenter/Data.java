@@ -19,19 +19,24 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
 import java.util.ArrayList;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  *
  * @author wira
  */
 public class Data {
-    private static ReentrantReadWriteLock lock = new ReentrantReadWriteLock(
-            true
-    );
+    private static final DataLock lock = new DataLock();
     private static File dataWorkDir = new File(".");
     
     public static void setDataWorkDir(String f) {
@@ -42,11 +47,15 @@ public class Data {
         return dataWorkDir;
     }
     
-    public static ReentrantReadWriteLock lock() {
+    public static DataLock lock() {
         return lock;
     }
     
     public static AbstractTableModel getTableModel(CompetitionState c) {
+        return getTableModel(c.getStandings());
+    }
+    
+    public static AbstractTableModel getTableModel(StandingsSnapshot standings) {
         DefaultTableModel m = new DefaultTableModel() {
             @Override
             public boolean isCellEditable(int row, int col) {
@@ -58,7 +67,7 @@ public class Data {
         System.arraycopy(getColHeaders(), 0, headers, 0, cols);
         m.setColumnIdentifiers(headers);
         String[] rowData;
-        for(String[] entry : getData(c)) {
+        for(String[] entry : getData(standings)) {
             rowData = new String[cols];
             System.arraycopy(entry, 0, rowData, 0, cols);
             m.addRow(rowData);
@@ -68,6 +77,10 @@ public class Data {
     }
     
     public static AbstractTableModel getResultsTableModel(CompetitionState c) {
+        return getResultsTableModel(c.getStandings());
+    }
+    
+    public static AbstractTableModel getResultsTableModel(StandingsSnapshot standings) {
         DefaultTableModel m = new DefaultTableModel() {
             @Override
             public boolean isCellEditable(int row, int col) {
@@ -77,7 +90,7 @@ public class Data {
         
         String[] colHeader = {"Rank", "Team#", "Team Name", "Institution", "Score", "Flags"};
         m.setColumnIdentifiers(colHeader);
-        for(String[] entry : getResultsData(c)) {
+        for(String[] entry : getResultsData(standings)) {
             m.addRow(entry);
         }
         
@@ -85,64 +98,72 @@ public class Data {
     }
     
     public static String getDataAsCSV(CompetitionState c) {
-        int hash = Config.getConfigString().hashCode();
-        StringBuilder str = new StringBuilder();
-        str.append("# config:");
-        str.append(Config.getConfigFile().getName());
-        str.append("\n# hash:");
-        str.append(String.valueOf(hash));
-        str.append("\n# tiebreakers2: ");
-        lock.readLock().lock();
+        StringWriter w = new StringWriter();
         try {
-            for(Team t : c.getTeams()) {
-                if(!t.hasScore()) {
-                    str.append(t.getNumber());
-                    str.append("=");
-                    str.append(t.getTiebreaker());
-                    str.append(" ");
-                }
+            writeCSV(c.getStandings(), w);
+        } catch(IOException e) {
+            // not thrown by StringWriter
+        }
+        return w.toString();
+    }
+    
+    /**
+     * Stream the saved CSV format of the standings to the writer, rows are
+     * written as they are read from the snapshot
+     */
+    public static void writeCSV(StandingsSnapshot standings, Writer w)
+            throws IOException {
+        int hash = Config.getConfigHash();
+        w.write("# config:");
+        w.write(Config.getConfigFile().getName());
+        w.write("\n# hash:");
+        w.write(String.valueOf(hash));
+        if(standings.getJournalMark() != null) {
+            w.write("\n# journal: ");
+            w.write(standings.getJournalMark().toString());
+        }
+        w.write("\n# tiebreakers2: ");
+        for(StandingsSnapshot.Entry t : standings.getTeams()) {
+            if(t.getScoreCount() == 0) {
+                w.write(t.getNumber() + "=" + t.getTiebreaker() + " ");
             }
-            str.append("\n");
-            for(Team t : c.getTeams()) {
-                List<String> annotations = t.getAnnotations();
-                if(!annotations.isEmpty()) {
-                    str.append("# annotations: ");
-                    str.append(t.getNumber());
-                    str.append(" ");
-                    for(int i = 0; i < annotations.size(); i++) {
-                        str.append(annotations.get(i));
-                        if(i < annotations.size() - 1) {
-                            str.append(",");
-                        }
-                    }
-                    str.append("\n");
-                }
+        }
+        w.write("\n");
+        for(StandingsSnapshot.Entry t : standings.getTeams()) {
+            List<String> annotations = t.getAnnotations();
+            if(!annotations.isEmpty()) {
+                w.write("# annotations: ");
+                w.write(String.valueOf(t.getNumber()));
+                w.write(" ");
+                w.write(String.join(",", annotations));
+                w.write("\n");
             }
-        } finally {
-            lock.readLock().unlock();
         }
-        str.append("# ");
+        w.write("# ");
         for(String s : getColHeaders()) {
-            str.append(s);
-            str.append(",");
+            w.write(s);
+            w.write(",");
         }
-        str.append("\n");
-        for(String[] ss : getData(c)) {
-            for(String s : ss) {
-                str.append(s);
-                str.append(",");
+        w.write("\n");
+        int n = Score.getFieldCount();
+        for(StandingsSnapshot.Entry t : standings.getTeams()) {
+            for(int scoreID = 0; scoreID < t.getScoreCount(); scoreID++) {
+                w.write(t.getNumber() + ",");
+                w.write(t.getName());
+                w.write("," + scoreID + ",");
+                for(int i = 0; i < n; i++) {
+                    w.write(t.getScoreValue(scoreID, i) + ",");
+                }
+                w.write(t.getScoreTotal(scoreID) + ",\n");
             }
-            str.append("\n");
         }
-        return str.toString();
     }
     
     public static void saveAsCSV(CompetitionState c, String f) {
         Log.d(0, "Data.saveAsCSV: " + f);
         try {
-            FileWriter w = new FileWriter(f);
-            w.write(getDataAsCSV(c));
-            w.close();
+            StandingsSnapshot standings = c.getStandings();
+            Exporter.write(new File(f), (w) -> writeCSV(standings, w));
             String parentDir = new File(f).getParent();
             dataWorkDir = parentDir == null ? new File(".") : new File(parentDir);
         } catch(IOException ioe) {
@@ -153,103 +174,15 @@ public class Data {
     public static void loadCSV(CompetitionState c, String f) {
         Log.d(0, "Data.loadCSV: " + f);
         try {
-            BufferedReader r = new BufferedReader(new FileReader(f));
-            String l;
-            String[] tokens;
-            while((l = r.readLine()) != null) {
-                if(l.startsWith("#")) {
-                    if(l.contains("hash")) {
-                        tokens = l.split("hash:");
-                        int hash = Integer.parseInt(tokens[1]);
-                        if(hash != Config.getConfigString().hashCode()) {
-                            System.err.println();
-                            System.err.println("WARNING! Config file hashes between " + 
-                                    "the current active config and the saved CSV " +
-                                    "DID NOT MATCH.");
-                            System.err.println("Active config=" + 
-                                    Config.getConfigString().hashCode() +
-                                    " Saved config=" + hash);
-                            System.err.println();
-                        }
-                    } else if(l.contains("tiebreakers2")) {
-                        tokens = l.split("tiebreakers2:");
-                        if(tokens.length >= 2) {
-                            String[] entries = tokens[1].trim().split("\\s+");
-                            for(String t : entries) {
-                                String[] pair = t.trim().split("=");
-                                if(pair.length == 2) {
-                                    int teamID = Integer.parseInt(pair[0]);
-                                    double tiebreaker = Double.parseDouble(pair[1]);
-                                    Team team = c.getTeamByID(teamID);
-                                    lock.writeLock().lock();
-                                    try {       
-                                        if(team != null) {
-                                            c.getTeamByID(teamID).setTiebreaker(tiebreaker);
-                                        } else {
-                                            Log.d(0, "Data.loadCSV: team with ID " + teamID + " not found" +
-                                                ", ignoring line");
-                                        }
-                                    } finally {
-                                        lock.writeLock().unlock();
-                                    }
-                                }
-                            }
-                        }
-                    } else if(l.contains("annotations:")) {
-                        tokens = l.split("annotations:");
-                        String[] entries = tokens[1].trim().split("\\s+", 2);
-                        if(entries.length != 2) {
-                            Log.d(0, "Data.loadCSV: invalid annotations entry, ignoring line: " + l);
-                        } else {
-                            String[] annotations = entries[1].trim().split(",");
-                            int teamID = Integer.parseInt(entries[0]);
-                            Team team = c.getTeamByID(teamID);
-                            lock.writeLock().lock();
-                            try {       
-                                if(team != null) {
-                                    team.clearAnnotations();
-                                    for(String annotation : annotations) {
-                                        team.addAnnotation(annotation);
-                                    }
-                                } else {
-                                    Log.d(0, "Data.loadCSV: loading annotations, team with ID " + 
-                                        teamID + " not found" + ", ignoring line");
-                                }
-                            } finally {
-                                lock.writeLock().unlock();
-                            }
-                        }                        
-                    // legacy tiebreakers format
-                    } else if(l.contains("tiebreakers:")) {
-                        tokens = l.split("tiebreakers:");
-                        String[] entries = tokens[1].trim().split("\\s+");
-                        for(String t : entries) {
-                            String[] pair = t.trim().split("-");
-                            int teamID = Integer.parseInt(pair[0]);
-                            double tiebreaker = Double.parseDouble(pair[1]);
-                            Team team = c.getTeamByID(teamID);
-                            lock.writeLock().lock();
-                            try {       
-                                if(team != null) {
-                                    c.getTeamByID(teamID).setTiebreaker(tiebreaker);
-                                } else {
-                                    Log.d(0, "Data.loadCSV: team with ID " + teamID + " not found" +
-                                        ", ignoring line");
-                                }
-                            } finally {
-                                lock.writeLock().unlock();
-                            }
-                        }
-                    }
-                } else {
-                    parseCSVLine(c, l);
-                }
-            }
-            c.sort();
-            r.close();
+            List<String> lines = Files.readAllLines(Paths.get(f),
+                                                    Charset.defaultCharset());
+            long start = System.nanoTime();
+            int rows = importCSV(c, lines);
+            Log.d(0, "Data.loadCSV: " + rows + " record(s) imported in " +
+                     (System.nanoTime() - start) / 1000000 + " ms");
             String parentDir = new File(f).getParent();
             dataWorkDir = parentDir == null ? new File(".") : new File(parentDir);
-            ControlCenter.triggerEvent(UserEvent.DATA_IMPORTED, Data.getData(c));
+            ControlCenter.triggerEvent(Event.of(UserEvent.DATA_IMPORTED));
         } catch(Exception e) {
             System.err.println("Data.loadCSV: failed to import from " + f);
             if(Log.debugLevel > 0) {
@@ -258,44 +191,201 @@ public class Data {
         }
     }
     
-    public static void parseCSVLine(CompetitionState c, String l) {
+    /**
+     * Import lines of saved CSV data. The lines are parsed in parallel
+     * into a batch that is then applied under a single write lock, the
+     * standings are sorted once at the end. No per-record events are
+     * published, callers announce the import with one DATA_IMPORTED.
+     *
+     * @return number of score records imported
+     */
+    public static int importCSV(CompetitionState c, List<String> lines) {
+        Journal.Mark mark = null;
+        for(String l : lines) {
+            if(l.startsWith("# journal:")) {
+                try {
+                    mark = Journal.Mark.parse(l.substring(10));
+                } catch(IllegalArgumentException e) {
+                    Log.d(0, "Data.importCSV: ignoring invalid journal line \"" +
+                             l + "\"");
+                }
+            } else if(l.startsWith("#") && l.contains("hash")) {
+                try {
+                    checkConfigHash(Integer.parseInt(l.split("hash:")[1].trim()));
+                } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    Log.d(0, "Data.importCSV: ignoring invalid hash line \"" +
+                             l + "\"");
+                }
+            }
+        }
+        c.setLoadedJournalMark(mark);
+        List<CSVRecord> batch = lines.parallelStream()
+                .flatMap(l -> parseCSVRecords(l).stream())
+                .collect(Collectors.toList());
+        int imported = 0;
+        Map<Team, List<Score>> scores = new LinkedHashMap<>();
+        lock.lockWrite();
+        try {
+            for(CSVRecord r : batch) {
+                Team t = c.getTeamByID(r.team);
+                if(t == null) {
+                    Log.d(0, "Data.importCSV: team with ID " + r.team +
+                             " not found, ignoring record");
+                    continue;
+                }
+                if(!Double.isNaN(r.tiebreaker)) {
+                    t.setTiebreaker(r.tiebreaker, false);
+                }
+                if(r.score != null) {
+                    scores.computeIfAbsent(t, k -> new ArrayList<>()).add(r.score);
+                    imported++;
+                }
+                if(r.replaceAnnotations) {
+                    t.clearAnnotations(false);
+                }
+                for(String annotation : r.annotations) {
+                    t.addAnnotation(annotation, false);
+                }
+            }
+            for(Map.Entry<Team, List<Score>> e : scores.entrySet()) {
+                e.getKey().addScores(e.getValue());
+            }
+        } finally {
+            lock.unlockWrite();
+        }
+        c.sort();
+        return imported;
+    }
+    
+    private static void checkConfigHash(int hash) {
+        if(hash != Config.getConfigHash()) {
+            System.err.println();
+            System.err.println("WARNING! Config file hashes between " + 
+                    "the current active config and the saved CSV " +
+                    "DID NOT MATCH.");
+            System.err.println("Active config=" + 
+                    Config.getConfigHash() +
+                    " Saved config=" + hash);
+            System.err.println();
+        }
+    }
+    
+    /**
+     * One parsed piece of a CSV line: a score, a tiebreaker or a team's
+     * annotations
+     */
+    private static class CSVRecord {
+        int team;
+        Score score;
+        double tiebreaker = Double.NaN;
+        boolean replaceAnnotations;
+        String[] annotations = new String[0];
+        
+        CSVRecord(int team) {
+            this.team = team;
+        }
+    }
+    
+    private static List<CSVRecord> parseCSVRecords(String l) {
+        List<CSVRecord> records = new ArrayList<>();
         String[] tokens;
-        tokens = l.trim().split(",");
-        String ID = tokens[0].trim();
-        Score s = new Score();
-        int scoreFields = Score.getFields().size();
-        lock.writeLock().lock();
         try {
+            if(!l.startsWith("#")) {
+                CSVRecord r = parseCSVRow(l);
+                if(r != null) {
+                    records.add(r);
+                }
+            } else if(l.contains("tiebreakers2")) {
+                tokens = l.split("tiebreakers2:");
+                if(tokens.length >= 2) {
+                    for(String t : tokens[1].trim().split("\\s+")) {
+                        String[] pair = t.trim().split("=");
+                        if(pair.length == 2) {
+                            CSVRecord r = new CSVRecord(Integer.parseInt(pair[0]));
+                            r.tiebreaker = Double.parseDouble(pair[1]);
+                            records.add(r);
+                        }
+                    }
+                }
+            } else if(l.contains("annotations:")) {
+                tokens = l.split("annotations:");
+                String[] entries = tokens[1].trim().split("\\s+", 2);
+                if(entries.length != 2) {
+                    Log.d(0, "Data.loadCSV: invalid annotations entry, ignoring line: " + l);
+                } else {
+                    CSVRecord r = new CSVRecord(Integer.parseInt(entries[0]));
+                    r.replaceAnnotations = true;
+                    r.annotations = entries[1].trim().split(",");
+                    records.add(r);
+                }
+            // legacy tiebreakers format
+            } else if(l.contains("tiebreakers:")) {
+                tokens = l.split("tiebreakers:");
+                for(String t : tokens[1].trim().split("\\s+")) {
+                    String[] pair = t.trim().split("-");
+                    CSVRecord r = new CSVRecord(Integer.parseInt(pair[0]));
+                    r.tiebreaker = Double.parseDouble(pair[1]);
+                    records.add(r);
+                }
+            }
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            Log.d(0, "Data.loadCSV: failed to parse " + l);
+            records.clear();
+        }
+        return records;
+    }
+    
+    private static CSVRecord parseCSVRow(String l) {
+        String[] tokens = l.trim().split(",");
+        int scoreFields = Score.getFieldCount();
+        try {
+            CSVRecord r = new CSVRecord(Integer.parseInt(tokens[0].trim()));
+            r.score = new Score();
             for(int i = 3; i < 3+scoreFields; i++) {
-            s.setValue(Config.getKeysInOriginalOrder("fields").get(i-3),
-                    Double.parseDouble(tokens[i].trim()));
+                r.score.setValue(i-3, Double.parseDouble(tokens[i].trim()));
             }
-            s.setCompleted(true);
-            Team t = c.getTeamByID(Integer.parseInt(ID));
-            if(t != null) {
-                t.addScore(s);
-                if(tokens.length >= 3+scoreFields+2) {
-                    tokens = tokens[3+scoreFields+1].trim().split(";");
-                    for(String str : tokens) {
-                        t.addAnnotation(str.trim());
-                    }
+            r.score.setCompleted(true);
+            if(tokens.length >= 3+scoreFields+2) {
+                tokens = tokens[3+scoreFields+1].trim().split(";");
+                r.annotations = new String[tokens.length];
+                for(int i = 0; i < tokens.length; i++) {
+                    r.annotations[i] = tokens[i].trim();
                 }
-            } else {
-                Log.d(0, "Data.parseCSVLine: team with ID " + ID + " not found" +
-                        ", ignoring line");
             }
+            return r;
         } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
             Log.d(0, "Data.parseCSVLine: failed to parse " + l);
             if(Log.debugLevel > 0) {
                 e.printStackTrace();
             }
+            return null;
+        }
+    }
+    
+    public static void parseCSVLine(CompetitionState c, String l) {
+        CSVRecord r = parseCSVRow(l);
+        if(r == null) {
+            return;
+        }
+        lock.lockWrite();
+        try {
+            Team t = c.getTeamByID(r.team);
+            if(t != null) {
+                t.addScore(r.score);
+                for(String annotation : r.annotations) {
+                    t.addAnnotation(annotation);
+                }
+            } else {
+                Log.d(0, "Data.parseCSVLine: team with ID " + r.team + " not found" +
+                        ", ignoring line");
+            }
         } finally {
-            lock.writeLock().unlock();
+            lock.unlockWrite();
         }
     }
     
     public static String[] getColHeaders() {
-        int n = Score.getFields().size();
+        int n = Score.getFieldCount();
         int cols = 3 + n + 1;
         
         String[] colHeader = new String[cols];
@@ -303,7 +393,7 @@ public class Data {
         colHeader[1] = "TeamName";
         colHeader[2] = "Score#";
         for(int i = 3; i < n+3; i++) {
-            colHeader[i] = Config.getKeysInOriginalOrder("fields").get(i-3);
+            colHeader[i] = Score.getFieldKey(i-3);
         }
         colHeader[3+n] = "Total";
         
@@ -311,173 +401,175 @@ public class Data {
     }
     
     public static ArrayList<String[]> getData(CompetitionState c) {
-        int n = Score.getFields().size();
+        return getData(c.getStandings());
+    }
+    
+    public static ArrayList<String[]> getData(StandingsSnapshot standings) {
+        int n = Score.getFieldCount();
         int cols = 3 + n + 1;
         ArrayList<String[]> rows = new ArrayList();
         
         String[] row;
-        lock.readLock().lock();
-        try {
-            for(Team t : c.getTeams()) {
-                int scoreID = 0;
-                for(Score s : t.getScores()) {
-                    row = new String[cols];
-                    row[0] = t.getNumber() + "";
-                    row[1] = t.getName();
-                    row[2] = scoreID + "";
-                    int scoreCol = 3;
-                    for(String key : Config.getKeysInOriginalOrder("fields")) {
-                        row[scoreCol] = s.getValue(key) + "";
-                        scoreCol++;
-                    }
-                    row[3+n] = s.getScore() + "";
-                    rows.add(row);
-                    scoreID++;
+        for(StandingsSnapshot.Entry t : standings.getTeams()) {
+            for(int scoreID = 0; scoreID < t.getScoreCount(); scoreID++) {
+                row = new String[cols];
+                row[0] = t.getNumber() + "";
+                row[1] = t.getName();
+                row[2] = scoreID + "";
+                for(int i = 0; i < n; i++) {
+                    row[3+i] = t.getScoreValue(scoreID, i) + "";
                 }
+                row[3+n] = t.getScoreTotal(scoreID) + "";
+                rows.add(row);
             }
-        } finally {
-            lock.readLock().unlock();
         }
         
         return rows;
     }
     
     public static ArrayList<String[]> getResultsData(CompetitionState c) {
+        return getResultsData(c.getStandings());
+    }
+    
+    public static ArrayList<String[]> getResultsData(StandingsSnapshot standings) {
         ArrayList<String[]> rows = new ArrayList();
+        forEachResultsRow(standings, rows::add);
+        return rows;
+    }
+    
+    /**
+     * Generate the results table one row at a time: rank, team number,
+     * name, institution, score and flags
+     */
+    public static void forEachResultsRow(StandingsSnapshot standings,
+                                         Consumer<String[]> action) {
         String[] row;
         
         int rank = 1;
-        lock.readLock().lock();
-        try {
-            c.sort();
-            for(Team t : c.getSortedClassifiedTeams()) {
-                row = new String[6];
-                row[0] = rank + "";
-                row[1] = t.getNumber() + "";
-                row[2] = t.getName();
-                row[3] = t.getInstitution();
-                row[4] = String.format("%.2f", t.getBestScore().getScore());
-                row[4] += !c.isTeamEligibleForChampionship(t) ? "*" : "";
-                row[5] = "";
-                for(String str : t.getAnnotations()) {
-                    row[5] += str + "; ";
-                }
-                rows.add(row);
-                rank++;
+        for(StandingsSnapshot.Entry t : standings.getClassifiedTeams()) {
+            row = new String[6];
+            row[0] = rank + "";
+            row[1] = t.getNumber() + "";
+            row[2] = t.getName();
+            row[3] = t.getInstitution();
+            row[4] = String.format("%.2f", t.getBestScore());
+            row[4] += !t.isChampionEligible() ? "*" : "";
+            row[5] = "";
+            for(String str : t.getAnnotations()) {
+                row[5] += str + "; ";
             }
-        } finally {
-            lock.readLock().unlock();
+            action.accept(row);
+            rank++;
         }
         boolean first = true;
         int prevRank = -1;
         double prevTiebreaker = -1; 
-        lock.readLock().lock();
-        try {
-            for(Team t : c.getDNFTeams()) {
-                if(prevTiebreaker != t.getTiebreaker()) {
-                    if(!first) {
-                        rank++;
-                    } else {
-                        first = false;
-                    }
+        for(StandingsSnapshot.Entry t : standings.getDNFTeams()) {
+            if(prevTiebreaker != t.getTiebreaker()) {
+                if(!first) {
+                    rank++;
+                } else {
+                    first = false;
                 }
+            }
 
-                row = new String[6];
-                row[0] = (rank != prevRank ? rank : "-") + "";
-                row[1] = t.getNumber() + "";
-                row[2] = t.getName();
-                row[3] = t.getInstitution();
-                row[4] = "DNF (" + String.format("%.2f", t.getTiebreaker()) + ")";
-                row[5] = "";
-                for(String str : t.getAnnotations()) {
-                    row[5] += str + "; ";
-                }
-                prevRank = rank;
-                prevTiebreaker = t.getTiebreaker();
-                rows.add(row);
+            row = new String[6];
+            row[0] = (rank != prevRank ? rank : "-") + "";
+            row[1] = t.getNumber() + "";
+            row[2] = t.getName();
+            row[3] = t.getInstitution();
+            row[4] = "DNF (" + String.format("%.2f", t.getTiebreaker()) + ")";
+            row[5] = "";
+            for(String str : t.getAnnotations()) {
+                row[5] += str + "; ";
             }
-        } finally {
-            lock.readLock().unlock();
+            prevRank = rank;
+            prevTiebreaker = t.getTiebreaker();
+            action.accept(row);
         }
-        
-        return rows;
     }
     
     public static void removeScore(CompetitionState c, int teamID, int scoreID) {
-        lock().writeLock().lock();
+        lock().lockWrite();
         try {
-            c.getTeamByID(teamID).getScores().remove(scoreID);
+            c.getTeamByID(teamID).removeScore(scoreID);
         } finally {
-            lock().writeLock().unlock();
+            lock().unlockWrite();
         }
-        Object[] params = {teamID, scoreID};
-        ControlCenter.triggerEvent(UserEvent.DATA_RECORD_EXPUNGED, params);
+        ControlCenter.triggerEvent(Event.record(UserEvent.DATA_RECORD_EXPUNGED,
+                                                teamID, scoreID));
     }
     
     public static void clearData(CompetitionState c) {
-        lock().writeLock().lock();
+        lock().lockWrite();
         try {
             for(Team t : c.getTeams()) {
-                t.getScores().clear();
-                t.clearTiebreaker();
+                t.clearScores();
+                t.clearTiebreaker(false);
                 t.clearAnnotations();
             }
         } finally {
-                lock().writeLock().unlock();
+                lock().unlockWrite();
         }
-        ControlCenter.triggerEvent(UserEvent.DATA_CLEARED, null);
+        ControlCenter.triggerEvent(Event.of(UserEvent.DATA_CLEARED));
     }
     
     public static void generateReport(CompetitionState c, String f) {
         Log.d(0, "Data.generateReport: " + f);
         try {
-            StringBuilder str = new StringBuilder();
-            FileWriter w = new FileWriter(f);
-            ArrayList<String[]> rows = getResultsData(c);
-            str.append("\n");
-            str.append(alignCenter("MERCURY REPORT OUTPUT", 80, ' '));
-            str.append("\n");
-            String exported = "Exported " + (new SimpleDateFormat("yyyy/MM/dd HH:mm:ss")).format(new Date());
-            str.append(alignCenter(exported, 80, ' '));
-            str.append("\n\n");
-            str.append("Rank ID#  Name                           Institution                    Score\n");
-            str.append("--------------------------------------------------------------------------------\n");
-            for(String[] row : rows) {
-                str.append(padBefore(row[0], 4));
-                str.append(" ");
-                str.append(padBefore(row[1], 3));
-                str.append("  ");
-                str.append(padAfter(row[2], 31));
-                str.append(padAfter(row[3], 31));
-                str.append(row[4]);
-                str.append("\n");
-            }
-            
-            str.append("\nTeam Flags\n\n");
-            for(String[] row : rows) {
-                str.append(padBefore(row[0], 4));
-                str.append(" ");
-                str.append(padBefore(row[1], 3));
-                str.append("  ");
-                str.append(padAfter(row[2], 31));
-                str.append(row[5]);
-                str.append("\n");
-            }
-            
-            str.append("\nScore Data----------------------------------------------------------------------\n");
-            str.append(getDataAsCSV(c));
-            
-            str.append("\nConfiguration-------------------------------------------------------------------\n");
-            str.append(Config.getConfigString());           
-            
-            str.append("\nEND OF FILE---------------------------------------------------------------------\n");
-            w.write(str.toString());
-            w.close();
+            StandingsSnapshot standings = c.getStandings();
+            Exporter.write(new File(f), (w) -> writeReport(standings, w));
         } catch(IOException ioe) {
             System.err.println("Data.generateReport: failed to export to " + f);
         }
     }
     
+    public static void writeReport(StandingsSnapshot standings, Writer w)
+            throws IOException {
+        w.write("\n");
+        w.write(alignCenter("MERCURY REPORT OUTPUT", 80, ' '));
+        w.write("\n");
+        String exported = "Exported " + (new SimpleDateFormat("yyyy/MM/dd HH:mm:ss")).format(new Date());
+        w.write(alignCenter(exported, 80, ' '));
+        w.write("\n\n");
+        w.write("Rank ID#  Name                           Institution                    Score\n");
+        w.write("--------------------------------------------------------------------------------\n");
+        writeResultsRows(standings, w, (row) ->
+                padAfter(row[2], 31) + padAfter(row[3], 31) + row[4]);
+
+        w.write("\nTeam Flags\n\n");
+        writeResultsRows(standings, w, (row) -> padAfter(row[2], 31) + row[5]);
+
+        w.write("\nScore Data----------------------------------------------------------------------\n");
+        writeCSV(standings, w);
+
+        w.write("\nConfiguration-------------------------------------------------------------------\n");
+        w.write(Config.getConfigString());
+
+        w.write("\nEND OF FILE---------------------------------------------------------------------\n");
+    }
+    
+    private static void writeResultsRows(StandingsSnapshot standings, Writer w,
+                                         Function<String[], String> columns)
+            throws IOException {
+        try {
+            forEachResultsRow(standings, (row) -> {
+                try {
+                    w.write(padBefore(row[0], 4));
+                    w.write(" ");
+                    w.write(padBefore(row[1], 3));
+                    w.write("  ");
+                    w.write(columns.apply(row));
+                    w.write("\n");
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
     public static String padAfter(String str, int len) {
         String s = str;
         if(str.length() > len) {
@@ -0,0 +1,115 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Competition data lock built on a StampedLock. Readers first run
+ * optimistically without taking the lock at all and only fall back to a
+ * read lock if a writer got in while they were reading, so a commit never
+ * has to queue behind the display and socket readers.
+ *
+ * The write lock is reentrant and the thread holding it may also read,
+ * as code that mutates the data often refreshes views from it right away.
+ * Read locks are not reentrant.
+ *
+ * @author wira
+ */
+public class DataLock {
+    private final StampedLock lock = new StampedLock();
+    private volatile Thread writer;
+    private long writeStamp;
+    private int writeHolds;
+
+    private final LongAdder optimisticReads = new LongAdder();
+    private final LongAdder lockedReads = new LongAdder();
+
+    public void lockWrite() {
+        if(writer == Thread.currentThread()) {
+            writeHolds++;
+            return;
+        }
+        writeStamp = lock.writeLock();
+        writer = Thread.currentThread();
+        writeHolds = 1;
+    }
+
+    public void unlockWrite() {
+        if(writer != Thread.currentThread()) {
+            throw new IllegalMonitorStateException(
+                    "DataLock.unlockWrite: write lock not held");
+        }
+        if(--writeHolds == 0) {
+            writer = null;
+            lock.unlockWrite(writeStamp);
+        }
+    }
+
+    public boolean isWriteLockedByCurrentThread() {
+        return writer == Thread.currentThread();
+    }
+
+    /**
+     * Run a reader against the data. The reader is first run without
+     * locking; if a write happened in the meantime its result is thrown
+     * away (as is any exception it ran into on the torn data) and it is
+     * run again under a read lock. Readers must therefore not have side
+     * effects other than caching what they read.
+     */
+    public <T> T read(Supplier<T> reader) {
+        if(writer == Thread.currentThread()) {
+            return reader.get();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if(stamp != 0) {
+            try {
+                T value = reader.get();
+                if(lock.validate(stamp)) {
+                    optimisticReads.increment();
+                    return value;
+                }
+            } catch(RuntimeException e) {
+                if(lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        lockedReads.increment();
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of reads that completed without taking the lock
+     */
+    public long getOptimisticReads() {
+        return optimisticReads.sum();
+    }
+
+    /**
+     * @return number of reads that had to be repeated under a read lock
+     */
+    public long getLockedReads() {
+        return lockedReads.sum();
+    }
+}
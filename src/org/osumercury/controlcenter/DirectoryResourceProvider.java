@@ -0,0 +1,101 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resources in a directory on disk
+ *
+ * @author wira
+ */
+public class DirectoryResourceProvider implements ResourceProvider {
+    private final File dir;
+
+    public DirectoryResourceProvider(File dir) {
+        this.dir = dir;
+    }
+
+    public File getRoot() {
+        return dir;
+    }
+
+    @Override
+    public String getName() {
+        return dir.getName();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return dir.isDirectory();
+    }
+
+    @Override
+    public List<String> list() {
+        List<String> names = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                if(f.isFile()) {
+                    names.add(f.getName());
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return new File(dir, name).isFile();
+    }
+
+    @Override
+    public long size(String name) {
+        File f = new File(dir, name);
+        return f.isFile() ? f.length() : -1;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return new FileInputStream(new File(dir, name));
+    }
+
+    @Override
+    public String getLocation(String name) {
+        return new File(dir, name).getPath();
+    }
+
+    @Override
+    public ResourceProvider resolve(String path) {
+        return new DirectoryResourceProvider(new File(dir, path));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return dir.getPath();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+/**
+ * Immutable event published on the EventBus. The ID is one of the
+ * UserEvent constants, everything a subscriber needs is captured when the
+ * event is created so that it can be handled later on another thread
+ * without looking at the (by then possibly changed) competition state.
+ * Session events also carry the ID of the track they happened on.
+ *
+ * Which fields are set depends on the event:
+ *
+ *   STATE_CHANGE_SETUP           team, index (attempts), seconds (setup),
+ *                                windowSeconds
+ *   STATE_TRANSITION             index (new state)
+ *   SCORE_CHANGED                key (field), index (field ID), text (value)
+ *   SESSION_ATTEMPT_COMMITTED    team, index (run), value (score)
+ *   SESSION_ATTEMPT_DISCARDED    team, index (run)
+ *   SESSION_TIME_ADDED           seconds
+ *   DATA_ADDED                   team, index (score ID)
+ *   DATA_RECORD_EXPUNGED         team, index (score ID)
+ *   DATA_CHANGED                 team, index (score ID), key (field), value
+ *   TEAM_PRE_SELECT              team
+ *   TEAM_ADDED_ANNOTATION        team, key (annotation)
+ *   TEAM_REMOVED_ANNOTATION      team, key (annotation)
+ *   TEAM_CLEARED_ANNOTATION      team
+ *   TEAM_TIEBREAKER_CHANGED      team
+ *   DISPLAY_MODE_CHANGE          index (mode)
+ *   DISPLAY_RANK_START           index (rank)
+ *   GUI_INIT                     param
+ *
+ * @author wira
+ */
+public final class Event {
+    private final int id;
+    private final String track;
+    private final long timestamp;
+    private final int team;
+    private final int index;
+    private final String key;
+    private final String text;
+    private final double value;
+    private final long seconds;
+    private final long windowSeconds;
+    private final Object param;
+
+    private Event(int id, int team, int index, String key, String text,
+                  double value, long seconds, long windowSeconds,
+                  Object param) {
+        this(id, Track.DEFAULT, System.currentTimeMillis(), team, index, key,
+             text, value, seconds, windowSeconds, param);
+    }
+
+    private Event(int id, String track, long timestamp, int team, int index,
+                  String key, String text, double value, long seconds,
+                  long windowSeconds, Object param) {
+        this.id = id;
+        this.track = track;
+        this.timestamp = timestamp;
+        this.team = team;
+        this.index = index;
+        this.key = key;
+        this.text = text;
+        this.value = value;
+        this.seconds = seconds;
+        this.windowSeconds = windowSeconds;
+        this.param = param;
+    }
+
+    public static Event of(int id) {
+        return new Event(id, -1, -1, null, null, Double.NaN, 0, 0, null);
+    }
+
+    public static Event of(int id, Object param) {
+        return new Event(id, -1, -1, null, null, Double.NaN, 0, 0, param);
+    }
+
+    public static Event index(int id, int index) {
+        return new Event(id, -1, index, null, null, Double.NaN, 0, 0, null);
+    }
+
+    public static Event team(int id, int team) {
+        return new Event(id, team, -1, null, null, Double.NaN, 0, 0, null);
+    }
+
+    public static Event record(int id, int team, int scoreID) {
+        return new Event(id, team, scoreID, null, null, Double.NaN, 0, 0, null);
+    }
+
+    public static Event attempt(int id, int team, int run, double score) {
+        return new Event(id, team, run, null, null, score, 0, 0, null);
+    }
+
+    public static Event annotation(int id, int team, String annotation) {
+        return new Event(id, team, -1, annotation, null, Double.NaN, 0, 0, null);
+    }
+
+    public static Event dataChanged(int team, int scoreID, String field,
+                                    double value) {
+        return new Event(UserEvent.DATA_CHANGED, team, scoreID, field, null,
+                         value, 0, 0, null);
+    }
+
+    public static Event scoreChanged(String key, int fieldID, String value) {
+        return new Event(UserEvent.SCORE_CHANGED, -1, fieldID, key, value,
+                         Double.NaN, 0, 0, null);
+    }
+
+    public static Event timeAdded(long seconds) {
+        return new Event(UserEvent.SESSION_TIME_ADDED, -1, -1, null, null,
+                         Double.NaN, seconds, 0, null);
+    }
+
+    public static Event setup(int team, int attempts, long setupSeconds,
+                              long windowSeconds) {
+        return new Event(UserEvent.STATE_CHANGE_SETUP, team, attempts, null,
+                         null, Double.NaN, setupSeconds, windowSeconds, null);
+    }
+
+    /**
+     * @return a copy of this event addressed to the given track
+     */
+    public Event onTrack(String track) {
+        return new Event(id, track, timestamp, team, index, key, text, value,
+                         seconds, windowSeconds, param);
+    }
+
+    public int getID() {
+        return id;
+    }
+
+    /**
+     * @return ID of the track the event happened on, events that are not
+     *         about a session belong to the default track
+     */
+    public String getTrack() {
+        return track;
+    }
+
+    public boolean isOnDefaultTrack() {
+        return Track.DEFAULT.equals(track);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getTeamNumber() {
+        return team;
+    }
+
+    /**
+     * @return score ID, run, field ID, attempts, state, display mode or
+     *         rank, depending on the event
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return field key or annotation, depending on the event
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return score field value as it was entered
+     */
+    public String getText() {
+        return text;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public Object getParam() {
+        return param;
+    }
+
+    /**
+     * Check if this event makes an older, still undelivered event
+     * redundant for a coalescing subscriber. Only events that carry the
+     * latest value of something qualify.
+     */
+    public boolean supersedes(Event older) {
+        if(older.id != id || !older.track.equals(track)) {
+            return false;
+        }
+        switch(id) {
+            case UserEvent.SCORE_CHANGED:
+                return older.index == index;
+            case UserEvent.DISPLAY_MODE_CHANGE:
+            case UserEvent.DISPLAY_RANK_START:
+            case UserEvent.TEAM_PRE_SELECT:
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Event " + id + (isOnDefaultTrack() ? "" : " @" + track) +
+               (team < 0 ? "" : " team=" + team) +
+               (index < 0 ? "" : " index=" + index) +
+               (key == null ? "" : " key=" + key);
+    }
+}
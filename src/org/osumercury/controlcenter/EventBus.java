@@ -0,0 +1,220 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publish/subscribe event dispatcher. Every subscriber gets its own bounded
+ * queue and dispatch thread so that a slow subscriber (e.g. a stalled
+ * socket client) can not hold up whoever published the event, usually a
+ * thread that is holding the data lock. Events are delivered to each
+ * subscriber in the order they were published.
+ *
+ * What happens when a subscriber's queue is full is chosen per subscriber:
+ *
+ *   BLOCK        the publisher waits for room. Handlers of such a
+ *                subscriber must not take Data.lock(), the publisher may
+ *                be holding it
+ *   DROP_OLDEST  the oldest undelivered event is discarded
+ *   COALESCE     an undelivered event superseded by the new one (see
+ *                Event.supersedes) is discarded, if none is the oldest is
+ *
+ * DIRECT subscribers have no queue and are called in the publisher's
+ * thread before publish returns, for hooks that are part of the change
+ * itself and have to complete before the publisher continues.
+ *
+ * @author wira
+ */
+public class EventBus {
+    public static final int DIRECT = 0;
+    public static final int BLOCK = 1;
+    public static final int DROP_OLDEST = 2;
+    public static final int COALESCE = 3;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions =
+            new CopyOnWriteArrayList<>();
+
+    public Subscription subscribe(String name, EventHandler handler,
+                                  int policy) {
+        return subscribe(name, handler, policy, DEFAULT_CAPACITY);
+    }
+
+    public Subscription subscribe(String name, EventHandler handler,
+                                  int policy, int capacity) {
+        Subscription s = new Subscription(name, handler, policy, capacity);
+        subscriptions.add(s);
+        Log.d(2, "EventBus.subscribe: " + name + " - total is " +
+                 subscriptions.size());
+        return s;
+    }
+
+    public void unsubscribe(Subscription s) {
+        if(s == null) {
+            return;
+        }
+        subscriptions.remove(s);
+        s.close();
+        Log.d(2, "EventBus.unsubscribe: " + s.name + " - total is " +
+                 subscriptions.size());
+    }
+
+    public void publish(Event e) {
+        for(Subscription s : subscriptions) {
+            s.offer(e);
+        }
+    }
+
+    public static class Subscription implements Runnable {
+        private final String name;
+        private final EventHandler handler;
+        private final int policy;
+        private final int capacity;
+        private final ArrayDeque<Event> queue;
+        private final Thread thread;
+        private boolean closed = false;
+        private long dropped = 0;
+
+        private Subscription(String name, EventHandler handler, int policy,
+                             int capacity) {
+            if(capacity < 1) {
+                throw new IllegalArgumentException(
+                        "EventBus.subscribe: capacity must be positive");
+            }
+            this.name = name;
+            this.handler = handler;
+            this.policy = policy;
+            this.capacity = capacity;
+            if(policy == DIRECT) {
+                queue = null;
+                thread = null;
+            } else {
+                queue = new ArrayDeque<>(capacity);
+                thread = new Thread(this, "EventBus-" + name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPolicy() {
+            return policy;
+        }
+
+        /**
+         * @return number of events discarded because the queue was full
+         */
+        public synchronized long getDroppedCount() {
+            return dropped;
+        }
+
+        private void offer(Event e) {
+            if(policy == DIRECT) {
+                dispatch(e);
+                return;
+            }
+            synchronized(this) {
+                if(closed) {
+                    return;
+                }
+                if(policy == COALESCE) {
+                    Iterator<Event> it = queue.iterator();
+                    while(it.hasNext()) {
+                        if(e.supersedes(it.next())) {
+                            it.remove();
+                            break;
+                        }
+                    }
+                }
+                // a handler publishing into its own queue must never wait
+                // for itself
+                if(policy == BLOCK && Thread.currentThread() != thread) {
+                    while(queue.size() >= capacity && !closed) {
+                        try {
+                            wait();
+                        } catch(InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    if(closed) {
+                        return;
+                    }
+                } else if(policy != BLOCK && queue.size() >= capacity) {
+                    queue.poll();
+                    dropped++;
+                    // 1, 2, 4, 8... so a stalled subscriber does not flood
+                    // the log
+                    if((dropped & (dropped - 1)) == 0) {
+                        Log.d(0, "EventBus: " + name + " is falling behind, " +
+                                 dropped + " event(s) dropped");
+                    }
+                }
+                queue.add(e);
+                notifyAll();
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if(queue != null) {
+                queue.clear();
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            Event e;
+            while(true) {
+                synchronized(this) {
+                    while(queue.isEmpty() && !closed) {
+                        try {
+                            wait();
+                        } catch(InterruptedException ie) {
+                            return;
+                        }
+                    }
+                    if(closed) {
+                        return;
+                    }
+                    e = queue.poll();
+                    notifyAll();
+                }
+                dispatch(e);
+            }
+        }
+
+        private void dispatch(Event e) {
+            try {
+                handler.handle(e);
+            } catch(Exception ex) {
+                Log.err("EventBus: " + name + " failed to handle " + e +
+                        ": " + ex.toString());
+                if(Log.debugLevel > 0) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
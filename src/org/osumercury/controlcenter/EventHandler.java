@@ -1,5 +1,5 @@
 /*
-    Copyright 2016 Wira Mulia
+    Copyright 2016-2018 Wira Mulia
 
     Licensed under the Apache License, Version 2.0 (the "License");
     you may not use this file except in compliance with the License.
@@ -19,6 +19,6 @@ package org.osumercury.controlcenter;
  *
  * @author wira
  */
-public interface ScoreChangedCallback {
-    public abstract void callback(String key, int scoreID, String scoreValue);
+public interface EventHandler {
+    public abstract void handle(Event e);
 }
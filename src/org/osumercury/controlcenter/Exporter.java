@@ -0,0 +1,89 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes exported files so that a half-written file never replaces a good
+ * one. The content is streamed into a temporary file next to the target,
+ * forced to the disk and then renamed over the target in one step.
+ *
+ * @author wira
+ */
+public class Exporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public interface Content {
+        void write(Writer w) throws IOException;
+    }
+
+    public interface ChannelContent {
+        void write(FileChannel ch) throws IOException;
+    }
+
+    /**
+     * Stream text into the file through a buffered channel writer. The
+     * platform charset is used, same as the FileWriter this replaces.
+     */
+    public static void write(File f, Content content) throws IOException {
+        writeChannel(f, ch -> {
+            CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            Writer w = new BufferedWriter(Channels.newWriter(ch, encoder,
+                    BUFFER_SIZE), BUFFER_SIZE);
+            content.write(w);
+            w.flush();
+        });
+    }
+
+    public static void writeChannel(File f, ChannelContent content)
+            throws IOException {
+        File target = f.getAbsoluteFile();
+        File tmp = File.createTempFile("." + target.getName() + "-", ".tmp",
+                                       target.getParentFile());
+        try {
+            try(FileChannel ch = FileChannel.open(tmp.toPath(),
+                    StandardOpenOption.WRITE)) {
+                content.write(ch);
+                ch.force(false);
+            }
+            try {
+                Files.move(tmp.toPath(), target.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Append-only journal of every change to the competition data. Each
+ * mutation of a team (scores, tiebreaker, annotations) is recorded as one
+ * line, replaying the journal on startup rebuilds the data as it was.
+ *
+ * Records are not written by the thread making the change. They are
+ * queued and a flusher thread writes everything queued so far with a
+ * single write and fsync (group commit), at most once every batch window.
+ * A commit therefore only costs a string append, and a crash loses at
+ * most the records of the batch that was being collected.
+ *
+ * Every journal has a random ID. Snapshots and saved CSV files record the
+ * ID of the journal that was attached and how many of its records they
+ * already contain (see Mark), replaying onto such a file only applies the
+ * records that came after it. A journal is refused if the loaded data was
+ * saved while a different journal was recording.
+ *
+ * Format, one record per line after the header:
+ *
+ *   MERCCC-JOURNAL 2 FIELDS ID    header, FIELDS is the score field count
+ *   A TEAM COMPLETED V1 ... VN    score added
+ *   E TEAM SCORE_ID V1 ... VN     score values changed in place
+ *   R TEAM SCORE_ID               score removed
+ *   C TEAM                        all scores removed
+ *   T TEAM VALUE                  tiebreaker set
+ *   TC TEAM                       tiebreaker cleared
+ *   N+ TEAM ANNOTATION            annotation added
+ *   N- TEAM ANNOTATION            annotation removed
+ *   NC TEAM                       annotations cleared
+ *
+ * @author wira
+ */
+public class Journal implements Runnable {
+    public static final String MAGIC = "MERCCC-JOURNAL";
+    public static final int VERSION = 2;
+    public static final long DEFAULT_BATCH_WINDOW_MS = 20;
+    public static final long RETRY_DELAY_MS = 1000;
+
+    private final File file;
+    private final String id;
+    private final FileChannel channel;
+    private final long batchWindowMs;
+    private final Thread flusher;
+    private StringBuilder pending = new StringBuilder();
+    private long appended = 0;
+    private long flushed = 0;
+    private long records;
+    private boolean closed = false;
+
+    private Journal(File file, String id, long records, FileChannel channel,
+                    long batchWindowMs) {
+        this.file = file;
+        this.id = id;
+        this.records = records;
+        this.channel = channel;
+        this.batchWindowMs = batchWindowMs;
+        flusher = new Thread(this, "Journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Replay the journal file into the competition state (if the file
+     * exists) and open it for appending. The journal is not attached to
+     * the competition state, call CompetitionState.setJournal for that.
+     *
+     * If the data was loaded from a file that carries a journal mark
+     * (CompetitionState.getLoadedJournalMark), only the records after the
+     * mark are replayed, and a journal with a different ID is refused.
+     */
+    public static Journal open(CompetitionState c, File f, long batchWindowMs)
+            throws IOException {
+        boolean header = f.exists() && f.length() > 0;
+        Replay replay = header ? replay(c, f, c.getLoadedJournalMark()) :
+                                 new Replay(UUID.randomUUID().toString());
+        FileChannel channel = FileChannel.open(f.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if(header && replay.valid < channel.size()) {
+            Log.d(0, "Journal.open: discarding " + (channel.size() - replay.valid) +
+                     " byte(s) of an incomplete record");
+            channel.truncate(replay.valid);
+        }
+        channel.position(channel.size());
+        Journal j = new Journal(f, replay.id, replay.records, channel,
+                                batchWindowMs);
+        if(!header) {
+            j.queue(MAGIC + " " + VERSION + " " + Score.getFieldCount() + " " +
+                    replay.id);
+        }
+        return j;
+    }
+
+    /**
+     * What replaying a journal file found
+     */
+    private static class Replay {
+        final String id;
+        long valid;   // length up to the end of the last complete record
+        long records; // complete records in the file, replayed or not
+
+        Replay(String id) {
+            this.id = id;
+        }
+    }
+
+    private static Replay replay(CompetitionState c, File f, Mark base)
+            throws IOException {
+        Replay replay;
+        long skip = 0;
+        int replayed = 0;
+        Data.lock().lockWrite();
+        try(BufferedReader r = new BufferedReader(new InputStreamReader(
+                new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String l = r.readLine();
+            String[] tokens = l == null ? new String[0] : l.split(" ");
+            if(tokens.length != 4 || !tokens[0].equals(MAGIC)) {
+                throw new IOException(f + " is not a journal");
+            }
+            if(Integer.parseInt(tokens[1]) != VERSION ||
+               Integer.parseInt(tokens[2]) != Score.getFieldCount()) {
+                throw new IOException(f + " was written by a different " +
+                        "version or configuration");
+            }
+            replay = new Replay(tokens[3]);
+            if(base != null) {
+                if(!base.getID().equals(replay.id)) {
+                    throw new IOException(f + " was not recorded on top of " +
+                            "the loaded data, it was saved with journal " +
+                            base.getID());
+                }
+                skip = base.getSequence();
+            }
+            replay.valid = l.getBytes(StandardCharsets.UTF_8).length + 1;
+            // a record only counts once its newline made it to the disk
+            StringBuilder line = new StringBuilder();
+            int ch;
+            while((ch = r.read()) != -1) {
+                if(ch != '\n') {
+                    line.append((char) ch);
+                    continue;
+                }
+                String record = line.toString();
+                line.setLength(0);
+                replay.valid += record.getBytes(StandardCharsets.UTF_8).length + 1;
+                // the loaded data already contains the records up to the mark
+                if(++replay.records <= skip) {
+                    continue;
+                }
+                try {
+                    apply(c, record);
+                    replayed++;
+                } catch(RuntimeException e) {
+                    Log.err("Journal.replay: ignoring invalid record \"" +
+                            record + "\": " + e);
+                }
+            }
+        } finally {
+            Data.lock().unlockWrite();
+        }
+        if(skip > replay.records) {
+            throw new IOException("the loaded data contains " + skip +
+                    " record(s) of " + f + ", the file only has " +
+                    replay.records);
+        }
+        Log.d(0, "Journal.replay: " + replayed + " record(s) replayed from " + f +
+                 ", " + skip + " already in the loaded data");
+        return replay;
+    }
+
+    private static void apply(CompetitionState c, String record) {
+        String[] tokens = record.split(" ", 3);
+        Team t = c.getTeamByID(Integer.parseInt(tokens[1]));
+        if(t == null) {
+            throw new IllegalArgumentException("team " + tokens[1] + " not found");
+        }
+        String[] values;
+        Score s;
+        switch(tokens[0]) {
+            case "A":
+                values = tokens[2].split(" ");
+                s = new Score();
+                for(int i = 0; i < Score.getFieldCount(); i++) {
+                    s.setValue(i, Double.parseDouble(values[i+1]));
+                }
+                s.setCompleted(values[0].equals("1"));
+                t.addScore(s);
+                break;
+            case "E":
+                values = tokens[2].split(" ");
+                s = t.getScores().get(Integer.parseInt(values[0]));
+                for(int i = 0; i < Score.getFieldCount(); i++) {
+                    s.setValue(i, Double.parseDouble(values[i+1]));
+                }
+                t.scoreChanged(s);
+                break;
+            case "R":
+                t.removeScore(Integer.parseInt(tokens[2]));
+                break;
+            case "C":
+                t.clearScores();
+                break;
+            case "T":
+                t.setTiebreaker(Double.parseDouble(tokens[2]));
+                break;
+            case "TC":
+                t.clearTiebreaker();
+                break;
+            case "N+":
+                t.addAnnotation(tokens[2]);
+                break;
+            case "N-":
+                t.removeAnnotation(tokens[2]);
+                break;
+            case "NC":
+                t.clearAnnotations();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown record type");
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    void addScore(Team t, Score s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("A ").append(t.getNumber()).append(s.isCompleted() ? " 1" : " 0");
+        appendValues(sb, s);
+        append(sb.toString());
+    }
+
+    void editScore(Team t, int scoreID, Score s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("E ").append(t.getNumber()).append(' ').append(scoreID);
+        appendValues(sb, s);
+        append(sb.toString());
+    }
+
+    void removeScore(Team t, int scoreID) {
+        append("R " + t.getNumber() + " " + scoreID);
+    }
+
+    void clearScores(Team t) {
+        append("C " + t.getNumber());
+    }
+
+    void setTiebreaker(Team t, double value) {
+        append("T " + t.getNumber() + " " + value);
+    }
+
+    void clearTiebreaker(Team t) {
+        append("TC " + t.getNumber());
+    }
+
+    void addAnnotation(Team t, String annotation) {
+        append("N+ " + t.getNumber() + " " + annotation);
+    }
+
+    void removeAnnotation(Team t, String annotation) {
+        append("N- " + t.getNumber() + " " + annotation);
+    }
+
+    void clearAnnotations(Team t) {
+        append("NC " + t.getNumber());
+    }
+
+    private static void appendValues(StringBuilder sb, Score s) {
+        for(int i = 0; i < Score.getFieldCount(); i++) {
+            sb.append(' ').append(s.getValue(i));
+        }
+    }
+
+    private synchronized void append(String record) {
+        if(queue(record)) {
+            records++;
+        }
+    }
+
+    private synchronized boolean queue(String line) {
+        if(closed) {
+            Log.err("Journal: record after close, dropped: " + line);
+            return false;
+        }
+        pending.append(line).append('\n');
+        appended++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @return how far the journal got, must be taken together with the
+     *         data it describes (under the data lock)
+     */
+    public synchronized Mark getMark() {
+        return new Mark(id, records);
+    }
+
+    /**
+     * Wait until every record appended so far is on the disk
+     */
+    public synchronized void sync() throws InterruptedException {
+        long target = appended;
+        while(flushed < target && flusher.isAlive()) {
+            wait(batchWindowMs + 1000);
+        }
+    }
+
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+            channel.close();
+        } catch(InterruptedException | IOException e) {
+            Log.err("Journal.close: " + e);
+        }
+    }
+
+    @Override
+    public void run() {
+        StringBuilder batch;
+        long target;
+        while(true) {
+            synchronized(this) {
+                while(pending.length() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                if(pending.length() == 0) {
+                    return;
+                }
+            }
+            if(batchWindowMs > 0) {
+                // let concurrent commits join this batch
+                try {
+                    Thread.sleep(batchWindowMs);
+                } catch(InterruptedException e) {
+                    // flush what we have
+                }
+            }
+            synchronized(this) {
+                batch = pending;
+                pending = new StringBuilder();
+                target = appended;
+            }
+            if(write(batch)) {
+                synchronized(this) {
+                    flushed = target;
+                    notifyAll();
+                }
+                continue;
+            }
+            // keep the batch in front of whatever was appended meanwhile
+            // and retry, the records are only flushed once they are on disk
+            synchronized(this) {
+                batch.append(pending);
+                pending = batch;
+                if(closed) {
+                    Log.err("Journal: closed with " + (appended - flushed) +
+                            " record(s) not written to " + file);
+                    return;
+                }
+                try {
+                    wait(RETRY_DELAY_MS);
+                } catch(InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean write(StringBuilder batch) {
+        long start = -1;
+        try {
+            start = channel.position();
+            ByteBuffer buf = ByteBuffer.wrap(
+                    batch.toString().getBytes(StandardCharsets.UTF_8));
+            while(buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+            return true;
+        } catch(IOException e) {
+            Log.err("Journal: failed to write to " + file + ": " + e);
+            if(start >= 0) {
+                // drop a partially written batch, it is written again
+                try {
+                    channel.truncate(start);
+                    channel.position(start);
+                } catch(IOException ex) {
+                    Log.err("Journal: failed to truncate " + file + ": " + ex);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Position in a journal, stored with saved data as "ID SEQUENCE"
+     */
+    public static final class Mark {
+        private final String id;
+        private final long sequence;
+
+        public Mark(String id, long sequence) {
+            this.id = id;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the string is not a mark
+         */
+        public static Mark parse(String str) {
+            String[] tokens = str.trim().split("\\s+");
+            if(tokens.length != 2) {
+                throw new IllegalArgumentException("invalid journal mark \"" +
+                        str + "\"");
+            }
+            return new Mark(tokens[0], Long.parseLong(tokens[1]));
+        }
+
+        public String getID() {
+            return id;
+        }
+
+        /**
+         * @return number of journal records the data contains
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public String toString() {
+            return id + " " + sequence;
+        }
+    }
+}
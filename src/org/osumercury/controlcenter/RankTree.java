@@ -0,0 +1,226 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Order-statistic AVL tree. Every node keeps the size of its subtree so
+ * that insert, remove and rank lookups are O(log n) and reading k elements
+ * starting at a given rank is O(log n + k). Elements must be unique with
+ * respect to the comparator.
+ *
+ * @author wira
+ */
+public class RankTree<E> {
+    private final Comparator<? super E> cmp;
+    private Node<E> root;
+
+    private static class Node<E> {
+        E value;
+        Node<E> left;
+        Node<E> right;
+        int height = 1;
+        int size = 1;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    public RankTree(Comparator<? super E> cmp) {
+        this.cmp = cmp;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public void insert(E e) {
+        root = insert(root, e);
+    }
+
+    public void remove(E e) {
+        root = remove(root, e);
+    }
+
+    /**
+     * @return zero-based position of the element, or -1 if it is not in
+     *         the tree
+     */
+    public int rank(E e) {
+        Node<E> n = root;
+        int rank = 0;
+        while(n != null) {
+            int c = cmp.compare(e, n.value);
+            if(c < 0) {
+                n = n.left;
+            } else if(c > 0) {
+                rank += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return rank + size(n.left);
+            }
+        }
+        return -1;
+    }
+
+    public E get(int index) {
+        Node<E> n = root;
+        while(n != null) {
+            int leftSize = size(n.left);
+            if(index < leftSize) {
+                n = n.left;
+            } else if(index > leftSize) {
+                index -= leftSize + 1;
+                n = n.right;
+            } else {
+                return n.value;
+            }
+        }
+        throw new IndexOutOfBoundsException("RankTree.get: " + index);
+    }
+
+    /**
+     * Collect up to count elements in order, starting at the zero-based
+     * position start
+     */
+    public List<E> range(int start, int count) {
+        List<E> list = new ArrayList<>(Math.max(0, Math.min(count, size() - start)));
+        range(root, start, count, list);
+        return list;
+    }
+
+    public List<E> toList() {
+        return range(0, size());
+    }
+
+    private void range(Node<E> n, int start, int count, List<E> out) {
+        if(n == null || out.size() >= count) {
+            return;
+        }
+        int leftSize = size(n.left);
+        if(start < leftSize) {
+            range(n.left, start, count, out);
+        }
+        if(start <= leftSize && out.size() < count) {
+            out.add(n.value);
+        }
+        if(out.size() < count) {
+            range(n.right, Math.max(0, start - leftSize - 1), count, out);
+        }
+    }
+
+    private Node<E> insert(Node<E> n, E e) {
+        if(n == null) {
+            return new Node<>(e);
+        }
+        int c = cmp.compare(e, n.value);
+        if(c < 0) {
+            n.left = insert(n.left, e);
+        } else if(c > 0) {
+            n.right = insert(n.right, e);
+        } else {
+            n.value = e;
+            return n;
+        }
+        return balance(n);
+    }
+
+    private Node<E> remove(Node<E> n, E e) {
+        if(n == null) {
+            return null;
+        }
+        int c = cmp.compare(e, n.value);
+        if(c < 0) {
+            n.left = remove(n.left, e);
+        } else if(c > 0) {
+            n.right = remove(n.right, e);
+        } else {
+            if(n.left == null) {
+                return n.right;
+            }
+            if(n.right == null) {
+                return n.left;
+            }
+            Node<E> successor = n.right;
+            while(successor.left != null) {
+                successor = successor.left;
+            }
+            n.value = successor.value;
+            n.right = remove(n.right, successor.value);
+        }
+        return balance(n);
+    }
+
+    private Node<E> balance(Node<E> n) {
+        update(n);
+        int bf = height(n.left) - height(n.right);
+        if(bf > 1) {
+            if(height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        } else if(bf < -1) {
+            if(height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+        return n;
+    }
+
+    private Node<E> rotateLeft(Node<E> n) {
+        Node<E> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private Node<E> rotateRight(Node<E> n) {
+        Node<E> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static void update(Node<?> n) {
+        n.height = Math.max(height(n.left), height(n.right)) + 1;
+        n.size = size(n.left) + size(n.right) + 1;
+    }
+
+    private static int height(Node<?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+}
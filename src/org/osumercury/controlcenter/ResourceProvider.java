@@ -0,0 +1,64 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * A directory of resource files (configuration, images, sounds) that are
+ * opened by name when needed, either on disk or inside a zip archive.
+ *
+ * @author wira
+ */
+public interface ResourceProvider extends Closeable {
+    /**
+     * @return name of the directory, like File.getName()
+     */
+    String getName();
+
+    /**
+     * @return true if the directory exists
+     */
+    boolean isDirectory();
+
+    /**
+     * @return names of the files directly in this directory, sorted
+     */
+    List<String> list();
+
+    boolean exists(String name);
+
+    /**
+     * @return uncompressed size of the file in bytes, or -1 if unknown
+     */
+    long size(String name);
+
+    InputStream open(String name) throws IOException;
+
+    /**
+     * @return human readable location of the file, for logs
+     */
+    String getLocation(String name);
+
+    /**
+     * @param path relative path of a subdirectory, may contain . and ..
+     * @return provider for the subdirectory, which may not exist
+     */
+    ResourceProvider resolve(String path);
+}
@@ -17,9 +17,9 @@ package org.osumercury.controlcenter;
 
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.EmptyStackException;
-import java.util.Stack;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -27,14 +27,36 @@ import java.util.Map;
  */
 public class Score {
     private static boolean initialized = false;
-    private static ArrayList<String> postfixFormula;
+    private static int[] program;
+    private static double[] literals;
+    private static String[] slotKeys;
+    private static double[] slotDefaults;
+    private static Map<String, Integer> slotIndex;
+    private static int stackDepth;
+    private static volatile int formulaVersion = 0;
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
     private static Map<String, String> fields;
     private static Map<String, String> description;
     private static Map<String, Integer> type;
     private static Map<String, Double[]> possibleValues;
     private static Map<String, Double> defaultValue;
     
-    private Map<String, Double> values;
+    private static final int OP_LITERAL = 0;
+    private static final int OP_FIELD   = 1;
+    private static final int OP_ADD     = 2;
+    private static final int OP_SUB     = 3;
+    private static final int OP_MUL     = 4;
+    private static final int OP_DIV     = 5;
+    private static final int OP_POW     = 6;
+    private static final int OP_SQRT    = 7;
+    
+    private static final ThreadLocal<double[]> evalStack =
+            ThreadLocal.withInitial(() -> new double[stackDepth]);
+    
+    private final double[] values;
+    private final AtomicInteger modifications = new AtomicInteger();
+    private volatile Memo memo; // null: needs calculation
     private boolean teamCompletedTrack = false;
     
     public static Map<String, String> getFields() {
@@ -50,14 +72,16 @@ public class Score {
     }
     
     public static int getFieldID(String key) {
-        int i = 0;
-        for(String fieldKey : Config.getKeysInOriginalOrder("fields")) {
-            if(fieldKey.equals(key)) {
-                return i;
-            }
-            i++;
-        }
-        return -1;
+        Integer slot = slotIndex.get(key);
+        return slot == null ? -1 : slot;
+    }
+    
+    public static int getFieldCount() {
+        return slotKeys.length;
+    }
+    
+    public static String getFieldKey(int id) {
+        return slotKeys[id];
     }
     
     public static Double[] getPossibleValues(String key) {
@@ -70,7 +94,6 @@ public class Score {
     
     public static void init(String postfix, Map<String, String> vars) {
         int typeTemp;
-        postfixFormula = new ArrayList();
         fields = vars;
         type = new HashMap();
         description = new HashMap();
@@ -113,20 +136,10 @@ public class Score {
         }
 
         Log.d(1, "Score.init: POSTFIX FORMULA: " + postfix);
-        tokens = postfix.split("\\s+");
-        for(String op : tokens) {
-            op = op.trim();
-            if(!op.equals("*") && !op.equals("/")  && !op.equals("+") 
-                     && !op.equals("-")  && !op.equals("SQRT")
-                     && !op.equals("^") && !isNumeric(op) &&
-                    !fields.containsKey(op)) {
-                Log.fatal(53, "Score.init: variable \"" + op + "\"" +
-                              " used in the formula is not defined");
-            } else {
-                postfixFormula.add(op);
-            }
-        }
-
+        compile(postfix);
+        
+        // scores memoized with the previous formula are now stale
+        formulaVersion++;
         initialized = true;            
         Log.d(0, "Score.init: scoring system is initialized");            
     }
@@ -164,115 +177,245 @@ public class Score {
         return false;
     }
     
-    public static double calculate(Score s) {
-        if(!initialized) {
-            System.err.println("Score.calculate: not initalized");
-            return -1;
+    /**
+     * Translate the postfix formula into a flat program of opcode/operand
+     * pairs. Literals are parsed here and variables are resolved to field
+     * slots so that calculate never has to look at a formula token again.
+     * The stack depth is checked as well, so a malformed formula is
+     * reported at initialization instead of on the first calculation.
+     */
+    private static void compile(String postfix) {
+        ArrayList<String> keys = new ArrayList<>();
+        for(String key : Config.getKeysInOriginalOrder("fields")) {
+            if(!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        slotKeys = keys.toArray(new String[0]);
+        slotDefaults = new double[slotKeys.length];
+        slotIndex = new HashMap<>();
+        for(int i = 0; i < slotKeys.length; i++) {
+            slotDefaults[i] = defaultValue.get(slotKeys[i]);
+            slotIndex.put(slotKeys[i], i);
         }
         
-        Log.d(4, "Score.calculate: called");
-
-        double val, op1, op2;
-        Stack<Double> stack = new Stack();
-        
-        for(String op : postfixFormula) {
-            Log.d(5, "Score.calculate: postfix process " + op);
-            try {
-                switch (op) {
-                    case "+":
-                        op2 = stack.pop();
-                        op1 = stack.pop();
-                        Log.d(5, "Score.calculate: " + op1 + " + " + op2);
-                        val = op1 + op2;
-                        break;
-                    case "-":
-                        op2 = stack.pop();
-                        op1 = stack.pop();
-                        Log.d(5, "Score.calculate: " + op1 + " - " + op2);
-                        val = op1 - op2;
-                        break;
-                    case "/":
-                        op2 = stack.pop();
-                        op1 = stack.pop();
-                        Log.d(5, "Score.calculate: " + op1 + " / " + op2);
-                        val = op1 / op2;
-                        break;
-                    case "*":
-                        op2 = stack.pop();
-                        op1 = stack.pop();
-                        Log.d(5, "Score.calculate: " + op1 + " * " + op2);
-                        val = op1 * op2;                   
-                        break;
-                    case "SQRT":
-                        op1 = stack.pop();
-                        val = Math.sqrt(op1);
-                        Log.d(5, "Score.calculate: sqrt(" + op1 + ")");
-                        break;
-                    case "^":
-                        op2 = stack.pop();
-                        op1 = stack.pop();
-                        Log.d(5, "Score.calculate: " + op1 + " ^ " + op2);
-                        val = Math.pow(op1, op2);             
-                        break;
-                    default:
-                        if(isNumeric(op)) {
-                            val = Double.parseDouble(op);
-                            Log.d(5, "Score.calculate: " + val + " [literal]");
-                        } else if(!s.containsKey(op)) {
-                            val = defaultValue.get(op);
-                            Log.d(5, "Score.calculate: " + val + " [default]");
-                        } else {
-                            val = s.getValue(op);
-                        }
-                        break;
-                }
-                stack.push(val);
-                Log.d(5, "Score.calculate: push " + val);
-            } catch(EmptyStackException ese) {
+        String[] tokens = postfix.trim().split("\\s+");
+        int[] code = new int[tokens.length * 2];
+        ArrayList<Double> constants = new ArrayList<>();
+        int depth = 0;
+        int maxDepth = 0;
+        int pc = 0;
+        for(String op : tokens) {
+            int opcode;
+            int operand = 0;
+            switch(op) {
+                case "+":
+                    opcode = OP_ADD;
+                    break;
+                case "-":
+                    opcode = OP_SUB;
+                    break;
+                case "*":
+                    opcode = OP_MUL;
+                    break;
+                case "/":
+                    opcode = OP_DIV;
+                    break;
+                case "^":
+                    opcode = OP_POW;
+                    break;
+                case "SQRT":
+                    opcode = OP_SQRT;
+                    break;
+                default:
+                    if(isNumeric(op)) {
+                        opcode = OP_LITERAL;
+                        operand = constants.size();
+                        constants.add(Double.parseDouble(op));
+                    } else if(fields.containsKey(op)) {
+                        opcode = OP_FIELD;
+                        operand = keys.indexOf(op);
+                    } else {
+                        Log.fatal(53, "Score.init: variable \"" + op + "\"" +
+                                      " used in the formula is not defined");
+                        return;
+                    }
+                    break;
+            }
+            switch(opcode) {
+                case OP_LITERAL:
+                case OP_FIELD:
+                    depth++;
+                    break;
+                case OP_SQRT:
+                    if(depth < 1) {
+                        depth = -1;
+                    }
+                    break;
+                default:
+                    depth = depth < 2 ? -1 : depth - 1;
+                    break;
+            }
+            if(depth < 0) {
                 Log.fatal(54, "Oops! Stack underflow!\n" + 
                           "There are too many operators and not enough variables\n" +
-                          "Check if your formula is correct: " + 
-                          Config.getValue("formula", "postfix"));
-            }            
+                          "Check if your formula is correct: " + postfix);
+                return;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            code[pc++] = opcode;
+            code[pc++] = operand;
+            Log.d(2, "Score.compile: " + op + " -> " + opcode + ":" + operand);
         }
-        if(stack.size() > 1) {
+        if(depth != 1) {
             Log.fatal(55, "Oops! Looks like scoring failed, " + 
                           "there are too many variables and not enough " +
                           "operators!\n" +
-                          "Check if your formula is correct: " + 
-                          Config.getValue("formula", "postfix"));
+                          "Check if your formula is correct: " + postfix);
+            return;
         }
         
-        return stack.pop();
+        literals = new double[constants.size()];
+        for(int i = 0; i < literals.length; i++) {
+            literals[i] = constants.get(i);
+        }
+        program = code;
+        stackDepth = maxDepth;
     }
     
-    public Score() {
-        values = new HashMap();
+    public static double calculate(Score s) {
+        if(!initialized) {
+            System.err.println("Score.calculate: not initalized");
+            return -1;
+        }
+        
+        final int[] code = program;
+        double[] stack = evalStack.get();
+        if(stack.length < stackDepth) {
+            stack = new double[stackDepth];
+            evalStack.set(stack);
+        }
+        
+        int sp = 0;
+        for(int pc = 0; pc < code.length; pc += 2) {
+            switch(code[pc]) {
+                case OP_LITERAL:
+                    stack[sp++] = literals[code[pc+1]];
+                    break;
+                case OP_FIELD:
+                    stack[sp++] = s.values[code[pc+1]];
+                    break;
+                case OP_ADD:
+                    sp--;
+                    stack[sp-1] = stack[sp-1] + stack[sp];
+                    break;
+                case OP_SUB:
+                    sp--;
+                    stack[sp-1] = stack[sp-1] - stack[sp];
+                    break;
+                case OP_MUL:
+                    sp--;
+                    stack[sp-1] = stack[sp-1] * stack[sp];
+                    break;
+                case OP_DIV:
+                    sp--;
+                    stack[sp-1] = stack[sp-1] / stack[sp];
+                    break;
+                case OP_POW:
+                    sp--;
+                    stack[sp-1] = Math.pow(stack[sp-1], stack[sp]);
+                    break;
+                case OP_SQRT:
+                    stack[sp-1] = Math.sqrt(stack[sp-1]);
+                    break;
+            }
+        }
         
+        return stack[0];
+    }
+    
+    public Score() {
         if(!Score.initialized()) {
+            values = new double[0];
             return;
         }
         
         // fill in with default values
-        for(String key : Config.getKeysInOriginalOrder("fields")) {
-            values.put(key, getDefaultValue(key));
-        }
+        values = slotDefaults.clone();
     }
     
     public void setValue(String key, double value) {
-        values.put(key, value);
+        Integer slot = slotIndex.get(key);
+        if(slot == null) {
+            Log.d(1, "Score.setValue: unknown field \"" + key + "\"");
+            return;
+        }
+        values[slot] = value;
+        modifications.incrementAndGet();
+    }
+    
+    public void setValue(int id, double value) {
+        values[id] = value;
+        modifications.incrementAndGet();
     }
     
     public double getValue(String key) {
-        return values.get(key);
+        Integer slot = slotIndex.get(key);
+        if(slot == null) {
+            Log.d(1, "Score.getValue: unknown field \"" + key + "\"");
+            return Double.NaN;
+        }
+        return values[slot];
+    }
+    
+    public double getValue(int id) {
+        return values[id];
     }
      
     public double getScore() {
-        return calculate(this);
+        Memo m = memo;
+        int version = formulaVersion;
+        int modified = modifications.get();
+        if(m != null && m.formulaVersion == version &&
+           m.modifications == modified) {
+            cacheHits.increment();
+            return m.score;
+        }
+        cacheMisses.increment();
+        double score = calculate(this);
+        // a value set while calculating may or may not have been seen,
+        // only remember the result if nothing changed in between
+        if(modifications.get() == modified && formulaVersion == version) {
+            memo = new Memo(score, version, modified);
+        }
+        return score;
+    }
+    
+    /**
+     * Calculated score together with what it was calculated from
+     */
+    private static class Memo {
+        final double score;
+        final int formulaVersion;
+        final int modifications;
+        
+        Memo(double score, int formulaVersion, int modifications) {
+            this.score = score;
+            this.formulaVersion = formulaVersion;
+            this.modifications = modifications;
+        }
+    }
+    
+    public static long getCacheHits() {
+        return cacheHits.sum();
+    }
+    
+    public static long getCacheMisses() {
+        return cacheMisses.sum();
     }
     
     public boolean containsKey(String key) {
-        return values.containsKey(key);
+        return slotIndex != null && slotIndex.containsKey(key);
     }
     
     public void setCompleted(boolean b) {
@@ -0,0 +1,127 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the state transitions of a scoring session: RUN when the setup
+ * time is up and POST_RUN when the run window is over or all attempts are
+ * used. Instead of polling, the scheduler keeps a single deadline task on
+ * a thread shared by all sessions. The session calls deadlineChanged
+ * whenever its deadline moves (start, pause, resume, added time, completed
+ * runs). Deadlines are only ever computed on the scheduler thread, so
+ * the session's monitor is never taken while holding the scheduler's.
+ *
+ * @author wira
+ */
+public class SessionScheduler {
+    private static final ScheduledThreadPoolExecutor executor;
+
+    static {
+        executor = new ScheduledThreadPoolExecutor(1, (r) -> {
+            Thread t = new Thread(r, "SessionScheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    private final SessionState r;
+    private final Track track;
+    private ScheduledFuture<?> deadline;
+    private volatile boolean stop = false;
+
+    public SessionScheduler(CompetitionState c) {
+        this(c.getTrack());
+    }
+
+    public SessionScheduler(Track track) {
+        this.track = track;
+        this.r = track.getSession();
+    }
+
+    public void start() {
+        Log.d(0, "SessionScheduler: start");
+        r.setScheduler(this);
+        deadlineChanged();
+    }
+
+    public void stop() {
+        Log.d(0, "SessionScheduler.stop: called");
+        synchronized(this) {
+            stop = true;
+            if(deadline != null) {
+                deadline.cancel(false);
+                deadline = null;
+            }
+        }
+        r.setScheduler(null);
+    }
+
+    public void deadlineChanged() {
+        if(!stop) {
+            executor.execute(this::reschedule);
+        }
+    }
+
+    /**
+     * Replace the pending deadline with one computed from the current
+     * session timer. Nothing is scheduled while the timer is paused.
+     */
+    private void reschedule() {
+        if(stop || r.getRunNumber() < 0) {
+            return;
+        }
+        long delay = -1;
+        if(r.isFinished()) {
+            delay = 0;
+        } else if(!r.isPaused()) {
+            delay = r.getRemainingTimeMilliseconds();
+        }
+        Log.d(3, "SessionScheduler.reschedule: deadline in " + delay + " ms");
+        synchronized(this) {
+            if(deadline != null) {
+                deadline.cancel(false);
+                deadline = null;
+            }
+            if(!stop && delay >= 0) {
+                deadline = executor.schedule(this::deadline, delay,
+                                             TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void deadline() {
+        if(stop) {
+            return;
+        }
+        if(r.getRunNumber() == 0 && r.isSetupFinished()) {
+            track.setState(CompetitionState.RUN);
+        }
+        if(r.isFinished()) {
+            stop();
+            track.setState(CompetitionState.POST_RUN);
+            SoundPlayer.play("window-end.wav");
+            Log.d(0, "SessionScheduler: exit");
+        } else {
+            // woke up early (clock granularity) or setup just ended
+            reschedule();
+        }
+    }
+}
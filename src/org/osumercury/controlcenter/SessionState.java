@@ -22,6 +22,7 @@ import java.util.ArrayList;
  * @author wira
  */
 public class SessionState {
+    private final String track;
     private int runs;
     private final int maxAttempts;
     private final long setupDuration;
@@ -34,8 +35,15 @@ public class SessionState {
     private final Team activeTeam;
     private final ArrayList<Score> activeScoreList;
     private Score currentScore;
+    private volatile SessionScheduler scheduler;
     
     public SessionState(Team t, int totalAttempts, long setupDuration, long windowDuration) {
+        this(Track.DEFAULT, t, totalAttempts, setupDuration, windowDuration);
+    }
+    
+    public SessionState(String track, Team t, int totalAttempts,
+                        long setupDuration, long windowDuration) {
+        this.track = track;
         this.maxAttempts = totalAttempts;
         this.setupDuration = setupDuration;
         this.windowDuration = windowDuration;
@@ -44,10 +52,14 @@ public class SessionState {
         paused = false;
         stopped = false;
         runs = -1; // staging
-        System.out.println("SessionState: new: " + totalAttempts + ", " +
+        System.out.println("SessionState: new: " + track + ", " + totalAttempts + ", " +
                 setupDuration + ", " + windowDuration);
     }
     
+    public String getTrack() {
+        return track;
+    }
+    
     public Team getActiveTeam() {
         return activeTeam;
     }
@@ -56,10 +68,22 @@ public class SessionState {
         return activeScoreList;
     }
     
+    void setScheduler(SessionScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+    
+    private void deadlineChanged() {
+        SessionScheduler s = scheduler;
+        if(s != null) {
+            s.deadlineChanged();
+        }
+    }
+    
     private void startTimer() {
         timerStart = System.currentTimeMillis();
         timerPaused = 0;
         paused = false;
+        deadlineChanged();
     }
     
     public void pauseTimer() {
@@ -68,7 +92,8 @@ public class SessionState {
         
         paused = true;
         timerPauseStarted = System.currentTimeMillis();
-        ControlCenter.triggerEvent(UserEvent.SESSION_PAUSED, null);
+        deadlineChanged();
+        ControlCenter.triggerEvent(Event.of(UserEvent.SESSION_PAUSED).onTrack(track));
     }
     
     public void resumeTimer() {
@@ -77,7 +102,8 @@ public class SessionState {
         
         timerPaused += (System.currentTimeMillis() - timerPauseStarted);
         paused = false;
-        ControlCenter.triggerEvent(UserEvent.SESSION_RESUMED, null);
+        deadlineChanged();
+        ControlCenter.triggerEvent(Event.of(UserEvent.SESSION_RESUMED).onTrack(track));
     }
     
     public long getElapsedTimeMilliseconds() {
@@ -115,7 +141,8 @@ public class SessionState {
     
     public void addTimeSeconds(long addedTime) {
         timerStart += addedTime*1000;
-        ControlCenter.triggerEvent(UserEvent.SESSION_TIME_ADDED, addedTime);
+        deadlineChanged();
+        ControlCenter.triggerEvent(Event.timeAdded(addedTime).onTrack(track));
     }
     
     public synchronized void start() {
@@ -135,23 +162,28 @@ public class SessionState {
         }
         // commit score to database
         try {
-            Data.lock().writeLock().lock();
+            Data.lock().lockWrite();
             if(commit) {
                 currentScore.setCompleted(true);            
                 activeScoreList.add(currentScore);
                 activeTeam.addScore(currentScore);
-                ControlCenter.triggerEvent(UserEvent.SESSION_ATTEMPT_COMMITTED, 
-                        runs);
+                ControlCenter.triggerEvent(Event.attempt(
+                        UserEvent.SESSION_ATTEMPT_COMMITTED,
+                        activeTeam.getNumber(), runs, currentScore.getScore())
+                        .onTrack(track));
             } else {
                 activeScoreList.add(null);
-                ControlCenter.triggerEvent(UserEvent.SESSION_ATTEMPT_DISCARDED, 
-                        runs);
+                ControlCenter.triggerEvent(Event.attempt(
+                        UserEvent.SESSION_ATTEMPT_DISCARDED,
+                        activeTeam.getNumber(), runs, Double.NaN)
+                        .onTrack(track));
             }
         } finally {
-            Data.lock().writeLock().unlock();
+            Data.lock().unlockWrite();
         }
         currentScore = new Score();
         runs++;
+        deadlineChanged();
     }
     
     public synchronized void endSetup() {
@@ -181,6 +213,15 @@ public class SessionState {
         }
     }
     
+    public synchronized double getCurrentScoreValue(int id) {
+        if(currentScore == null) {
+            Log.err("SessionState.getCurrentScoreValue: no current score available");
+            return Double.NaN;
+        } else {
+            return currentScore.getValue(id);
+        }
+    }
+    
     public synchronized double getCurrentTotalScore() {
         if(currentScore == null) {
             Log.err("SessionState.getCurrentTotalScore: no current score available");
@@ -212,5 +253,6 @@ public class SessionState {
     
     public void end() {
         stopped = true;
+        deadlineChanged();
     }
 }
@@ -0,0 +1,361 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the competition data, meant for restoring a large
+ * dataset quickly (e.g. after a restart in the middle of an event). CSV
+ * remains the export format. The file is mapped and read column by
+ * column, and every team is restored under a single write lock with one
+ * standings update per team.
+ *
+ * Format (big endian):
+ *
+ *   int     MAGIC, VERSION, config hash, field count
+ *   int     journal ID length (0: no journal), UTF-8 bytes
+ *   long    journal sequence, see Journal.Mark
+ *   int     annotation count, then for each: int length, UTF-8 bytes
+ *   int     team count, total score count
+ *   teams   int number, double tiebreaker, int score count,
+ *           int annotation count, int annotation index...
+ *   byte    completed flag of every score
+ *   double  value of every score, one column per field
+ *
+ * Scores are stored in team order, so a team's scores are the next
+ * "score count" entries of every column.
+ *
+ * @author wira
+ */
+public class Snapshot {
+    public static final int MAGIC = 0x4D534E50; // "MSNP"
+    public static final int VERSION = 2;
+    public static final String EXTENSION = "snap";
+
+    /**
+     * @return true if the file starts with the snapshot magic number
+     */
+    public static boolean isSnapshot(File f) {
+        if(!f.isFile() || f.length() < 4) {
+            return false;
+        }
+        try(FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(4);
+            while(buf.hasRemaining() && ch.read(buf) >= 0) { }
+            buf.flip();
+            return buf.remaining() == 4 && buf.getInt() == MAGIC;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copy of one team's data, taken under the data lock so that it can be
+     * encoded and written without holding the lock
+     */
+    public static final class TeamData {
+        private final int number;
+        private final double tiebreaker;
+        private final boolean[] completed;
+        private final double[][] values;
+        private final String[] annotations;
+
+        private TeamData(Team t) {
+            List<Score> scores = t.getScores();
+            number = t.getNumber();
+            tiebreaker = t.getStoredTiebreaker();
+            completed = new boolean[scores.size()];
+            values = new double[scores.size()][Score.getFieldCount()];
+            for(int i = 0; i < completed.length; i++) {
+                Score s = scores.get(i);
+                completed[i] = s.isCompleted();
+                for(int j = 0; j < values[i].length; j++) {
+                    values[i][j] = s.getValue(j);
+                }
+            }
+            annotations = t.getAnnotations().toArray(new String[0]);
+        }
+
+        /**
+         * Must be called with the data lock held (or inside
+         * DataLock.read)
+         */
+        public static TeamData of(Team t) {
+            return new TeamData(t);
+        }
+
+        public int getNumber() {
+            return number;
+        }
+    }
+
+    /**
+     * Copies of the teams together with the journal position they match
+     */
+    public static final class Capture {
+        private final List<TeamData> teams;
+        private final Journal.Mark journal;
+
+        /**
+         * Must be called with the data lock held (or inside
+         * DataLock.read)
+         */
+        public Capture(CompetitionState c, List<TeamData> teams) {
+            this.teams = teams;
+            this.journal = c.getJournalMark();
+        }
+
+        public List<TeamData> getTeams() {
+            return teams;
+        }
+    }
+
+    /**
+     * Write a snapshot of the current data. A crash while saving leaves
+     * the previous snapshot intact, see Exporter.
+     */
+    public static void save(CompetitionState c, File f) throws IOException {
+        save(Data.lock().read(() -> new Capture(c, capture(c))), f);
+    }
+
+    /**
+     * Write a snapshot of previously captured team data, the data lock is
+     * not needed
+     */
+    public static void save(Capture capture, File f) throws IOException {
+        long start = System.nanoTime();
+        byte[] data = encode(capture.teams, capture.journal);
+        Exporter.writeChannel(f, ch -> {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while(buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        });
+        Log.d(1, "Snapshot.save: " + f + " (" + data.length + " bytes, " +
+                 (System.nanoTime() - start) / 1000000 + " ms)");
+    }
+
+    private static List<TeamData> capture(CompetitionState c) {
+        List<TeamData> teams = new ArrayList<>(c.getTeams().size());
+        for(Team t : c.getTeams()) {
+            teams.add(new TeamData(t));
+        }
+        return teams;
+    }
+
+    private static byte[] encode(List<TeamData> teams, Journal.Mark journal)
+            throws IOException {
+        int fields = Score.getFieldCount();
+        Map<String, Integer> annotationIndex = new HashMap<>();
+        List<String> annotationTable = new ArrayList<>();
+        int scoreCount = 0;
+        for(TeamData t : teams) {
+            scoreCount += t.completed.length;
+            for(String a : t.annotations) {
+                if(!annotationIndex.containsKey(a)) {
+                    annotationIndex.put(a, annotationTable.size());
+                    annotationTable.add(a);
+                }
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                64 + teams.size() * 32 + scoreCount * (1 + 8 * fields));
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(Config.getConfigHash());
+            out.writeInt(fields);
+            byte[] id = journal == null ? new byte[0] :
+                        journal.getID().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(id.length);
+            out.write(id);
+            out.writeLong(journal == null ? 0 : journal.getSequence());
+            out.writeInt(annotationTable.size());
+            for(String a : annotationTable) {
+                byte[] utf = a.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf.length);
+                out.write(utf);
+            }
+            out.writeInt(teams.size());
+            out.writeInt(scoreCount);
+            for(TeamData t : teams) {
+                out.writeInt(t.number);
+                out.writeDouble(t.tiebreaker);
+                out.writeInt(t.completed.length);
+                out.writeInt(t.annotations.length);
+                for(String a : t.annotations) {
+                    out.writeInt(annotationIndex.get(a));
+                }
+            }
+            for(TeamData t : teams) {
+                for(boolean b : t.completed) {
+                    out.writeByte(b ? 1 : 0);
+                }
+            }
+            for(int i = 0; i < fields; i++) {
+                for(TeamData t : teams) {
+                    for(double[] v : t.values) {
+                        out.writeDouble(v[i]);
+                    }
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replace the data of every team found in the snapshot with the
+     * snapshot's. Teams that are not in the current configuration are
+     * ignored.
+     */
+    public static void load(CompetitionState c, File f) throws IOException {
+        long start = System.nanoTime();
+        int fields = Score.getFieldCount();
+        int[] numbers;
+        double[] tiebreakers;
+        int[] scoreCounts;
+        String[][] annotations;
+        Journal.Mark journal = null;
+        boolean[] completed;
+        double[][] columns;
+        try(FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                          ch.size());
+            if(buf.getInt() != MAGIC) {
+                throw new IOException(f + " is not a snapshot");
+            }
+            if(buf.getInt() != VERSION) {
+                throw new IOException(f + " was written by a different version");
+            }
+            int hash = buf.getInt();
+            if(buf.getInt() != fields) {
+                throw new IOException(f + " has a different number of score fields");
+            }
+            if(hash != Config.getConfigHash()) {
+                System.err.println();
+                System.err.println("WARNING! Config file hashes between " +
+                        "the current active config and the snapshot " +
+                        "DID NOT MATCH.");
+                System.err.println("Active config=" +
+                        Config.getConfigHash() +
+                        " Saved config=" + hash);
+                System.err.println();
+            }
+            byte[] id = new byte[buf.getInt()];
+            buf.get(id);
+            long sequence = buf.getLong();
+            if(id.length > 0) {
+                journal = new Journal.Mark(new String(id, StandardCharsets.UTF_8),
+                                           sequence);
+            }
+            String[] annotationTable = new String[buf.getInt()];
+            for(int i = 0; i < annotationTable.length; i++) {
+                byte[] utf = new byte[buf.getInt()];
+                buf.get(utf);
+                annotationTable[i] = new String(utf, StandardCharsets.UTF_8);
+            }
+            int teamCount = buf.getInt();
+            int scoreCount = buf.getInt();
+            numbers = new int[teamCount];
+            tiebreakers = new double[teamCount];
+            scoreCounts = new int[teamCount];
+            annotations = new String[teamCount][];
+            long total = 0;
+            for(int i = 0; i < teamCount; i++) {
+                numbers[i] = buf.getInt();
+                tiebreakers[i] = buf.getDouble();
+                scoreCounts[i] = buf.getInt();
+                if(scoreCounts[i] < 0) {
+                    throw new IOException(f + " is corrupt, team " + numbers[i] +
+                            " has a negative score count");
+                }
+                total += scoreCounts[i];
+                annotations[i] = new String[buf.getInt()];
+                for(int j = 0; j < annotations[i].length; j++) {
+                    annotations[i][j] = annotationTable[buf.getInt()];
+                }
+            }
+            // checked before anything is restored, a bad count would fail
+            // halfway through the restore
+            if(total != scoreCount) {
+                throw new IOException(f + " is corrupt, the teams have " + total +
+                        " score(s) instead of " + scoreCount);
+            }
+            completed = new boolean[scoreCount];
+            for(int i = 0; i < scoreCount; i++) {
+                completed[i] = buf.get() != 0;
+            }
+            columns = new double[fields][scoreCount];
+            for(int i = 0; i < fields; i++) {
+                buf.asDoubleBuffer().get(columns[i]);
+                buf.position(buf.position() + scoreCount * 8);
+            }
+        } catch(BufferUnderflowException | IndexOutOfBoundsException |
+                NegativeArraySizeException e) {
+            throw new IOException(f + " is truncated or corrupt");
+        }
+
+        int restored = 0;
+        int offset = 0;
+        Data.lock().lockWrite();
+        try {
+            for(int i = 0; i < numbers.length; i++) {
+                List<Score> scores = new ArrayList<>(scoreCounts[i]);
+                for(int j = offset; j < offset + scoreCounts[i]; j++) {
+                    Score s = new Score();
+                    for(int k = 0; k < fields; k++) {
+                        s.setValue(k, columns[k][j]);
+                    }
+                    s.setCompleted(completed[j]);
+                    scores.add(s);
+                }
+                offset += scoreCounts[i];
+                Team t = c.getTeamByID(numbers[i]);
+                if(t == null) {
+                    Log.d(0, "Snapshot.load: team with ID " + numbers[i] +
+                             " not found, ignoring");
+                    continue;
+                }
+                t.restore(scores, tiebreakers[i], annotations[i]);
+                restored++;
+            }
+        } finally {
+            Data.lock().unlockWrite();
+        }
+        c.setLoadedJournalMark(journal);
+        c.sort();
+        String parentDir = f.getAbsoluteFile().getParent();
+        Data.setDataWorkDir(parentDir == null ? "." : parentDir);
+        Log.d(0, "Snapshot.load: " + restored + " team(s), " + offset +
+                 " score(s) restored from " + f + " in " +
+                 (System.nanoTime() - start) / 1000000 + " ms");
+        ControlCenter.triggerEvent(Event.of(UserEvent.DATA_IMPORTED));
+    }
+}
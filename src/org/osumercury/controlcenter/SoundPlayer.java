@@ -17,7 +17,6 @@
 package org.osumercury.controlcenter;
 
 import org.osumercury.controlcenter.gui.Assets;
-import java.io.*;
 import javax.sound.sampled.*;
 
 /**
@@ -52,13 +51,12 @@ class PlayThread extends Thread {
     @Override
     public void run() {
         try {
-            File f = new File(Assets.getSoundAssetPath(key));
             AudioInputStream stream;
             AudioFormat format;
             DataLine.Info info;
             Clip clip;
 
-            stream = AudioSystem.getAudioInputStream(f);
+            stream = AudioSystem.getAudioInputStream(Assets.openSoundAsset(key));
             format = stream.getFormat();
             info = new DataLine.Info(Clip.class, format);
             clip = (Clip) AudioSystem.getLine(info);
@@ -0,0 +1,170 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the competition data and standings at one point in
+ * time. CompetitionState publishes a new snapshot whenever the data
+ * changed, readers can hold on to one without locking and compare
+ * versions to find out if anything changed since their last read.
+ *
+ * @author wira
+ */
+public final class StandingsSnapshot {
+    private final int version;
+    private final List<Entry> teams;
+    private final List<Entry> classified;
+    private final List<Entry> dnf;
+    private final Journal.Mark journalMark;
+
+    StandingsSnapshot(CompetitionState c, int version) {
+        this.version = version;
+        journalMark = c.getJournalMark();
+        Map<Team, Entry> entries = new HashMap<>();
+        List<Entry> list = new ArrayList<>(c.getTeams().size());
+        for(Team t : c.getTeams()) {
+            Entry e = new Entry(t, c.isTeamEligibleForChampionship(t));
+            entries.put(t, e);
+            list.add(e);
+        }
+        teams = Collections.unmodifiableList(list);
+        classified = entriesOf(c.getSortedClassifiedTeams(), entries);
+        dnf = entriesOf(c.getDNFTeams(), entries);
+    }
+
+    private static List<Entry> entriesOf(List<Team> order, Map<Team, Entry> entries) {
+        List<Entry> list = new ArrayList<>(order.size());
+        for(Team t : order) {
+            list.add(entries.get(t));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return how far the journal was when the snapshot was taken, null if
+     *         no journal was attached
+     */
+    public Journal.Mark getJournalMark() {
+        return journalMark;
+    }
+
+    /**
+     * @return all teams in the order of the configuration file
+     */
+    public List<Entry> getTeams() {
+        return teams;
+    }
+
+    public List<Entry> getClassifiedTeams() {
+        return classified;
+    }
+
+    public List<Entry> getDNFTeams() {
+        return dnf;
+    }
+
+    public static final class Entry {
+        private final Team team;
+        private final boolean championEligible;
+        private final Double bestScore;
+        private final double tiebreaker;
+        private final double[][] scores;
+        private final double[] totals;
+        private final List<String> annotations;
+
+        private Entry(Team t, boolean championEligible) {
+            this.team = t;
+            this.championEligible = championEligible;
+            this.bestScore = t.getBestScore() == null ? null :
+                                t.getBestScore().getScore();
+            this.tiebreaker = t.getTiebreaker();
+            List<Score> teamScores = t.getScores();
+            scores = new double[teamScores.size()][];
+            totals = new double[teamScores.size()];
+            for(int i = 0; i < scores.length; i++) {
+                Score s = teamScores.get(i);
+                scores[i] = new double[Score.getFieldCount()];
+                for(int j = 0; j < scores[i].length; j++) {
+                    scores[i][j] = s.getValue(j);
+                }
+                totals[i] = s.getScore();
+            }
+            this.annotations = Collections.unmodifiableList(
+                    new ArrayList<>(t.getAnnotations()));
+        }
+
+        public Team getTeam() {
+            return team;
+        }
+
+        public int getNumber() {
+            return team.getNumber();
+        }
+
+        public String getName() {
+            return team.getName();
+        }
+
+        public String getInstitution() {
+            return team.getInstitution();
+        }
+
+        public String getLogoFileName() {
+            return team.getLogoFileName();
+        }
+
+        public boolean isChampionEligible() {
+            return championEligible;
+        }
+
+        /**
+         * @return the best completed score, or null if there is none
+         */
+        public Double getBestScore() {
+            return bestScore;
+        }
+
+        public double getTiebreaker() {
+            return tiebreaker;
+        }
+
+        public int getScoreCount() {
+            return scores.length;
+        }
+
+        public double getScoreValue(int scoreID, int fieldID) {
+            return scores[scoreID][fieldID];
+        }
+
+        public double getScoreTotal(int scoreID) {
+            return totals[scoreID];
+        }
+
+        public List<String> getAnnotations() {
+            return annotations;
+        }
+    }
+}
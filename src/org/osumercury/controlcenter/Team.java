@@ -16,8 +16,11 @@
 package org.osumercury.controlcenter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -30,7 +33,12 @@ public class Team implements Comparable {
     private final String teamInstitution;
     private final List<Score> scores;
     private final List<String> annotations;
+    private long annotationMask;       // annotation IDs 0-63
+    private BitSet annotationOverflow; // annotation IDs 64 and up
     private double tiebreaker;    
+    private Score bestScore;
+    private double bestScoreValue;
+    private CompetitionState competition;
     
     public static final int SORT_DESCENDING = 0;
     public static final int SORT_ASCENDING = 1;
@@ -39,13 +47,17 @@ public class Team implements Comparable {
     
     private static int SORT_ORDER = SORT_DESCENDING; // higher is better by default
     
+    // annotation strings are interned into IDs shared by all teams so that
+    // membership tests and criteria checks are bit operations
+    private static final Map<String, Integer> annotationIDs = new ConcurrentHashMap<>();
+    
     public Team(int teamNumber, String teamName, String teamInstitution, String logo) {
         this.teamNumber = teamNumber;
         this.teamName = teamName;
         this.teamInstitution = teamInstitution;
         this.logo = logo;
         scores = new ArrayList();
-        clearTiebreaker();
+        clearTiebreaker(false);
         annotations = new ArrayList<>();
     }
     
@@ -65,14 +77,88 @@ public class Team implements Comparable {
         return logo;
     }
     
+    void setCompetitionState(CompetitionState c) {
+        competition = c;
+    }
+    
+    private void standingsChanged() {
+        if(competition != null) {
+            competition.updateStandings(this);
+        }
+    }
+    
+    private Journal journal() {
+        return competition != null ? competition.getJournal() : null;
+    }
+    
     public void addScore(Score s) {
         Log.d(0, "Team.addScore(" + teamNumber + "=" + teamName +
                 "): result=" + s.getScore());
         scores.add(s);
+        if(s.isCompleted() && isBetter(s.getScore())) {
+            bestScore = s;
+            bestScoreValue = s.getScore();
+        }
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.addScore(this, s);
+        }
+    }
+    
+    /**
+     * Add several scores with a single standings update
+     */
+    void addScores(List<Score> added) {
+        Journal j = journal();
+        for(Score s : added) {
+            scores.add(s);
+            if(s.isCompleted() && isBetter(s.getScore())) {
+                bestScore = s;
+                bestScoreValue = s.getScore();
+            }
+            if(j != null) {
+                j.addScore(this, s);
+            }
+        }
+        Log.d(1, "Team.addScores(" + teamNumber + "=" + teamName + "): " +
+                 added.size() + " score(s)");
+        standingsChanged();
     }
     
     public void removeScore(int index) {
-        scores.remove(index);
+        if(scores.remove(index) == bestScore) {
+            findBestScore();
+        }
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.removeScore(this, index);
+        }
+    }
+    
+    public void clearScores() {
+        scores.clear();
+        bestScore = null;
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.clearScores(this);
+        }
+    }
+    
+    /**
+     * Must be called after a field of one of this team's scores was
+     * modified so the cached best score and the standings are updated
+     */
+    public void scoreChanged(Score s) {
+        findBestScore();
+        standingsChanged();
+        Journal j = journal();
+        int index = scores.indexOf(s);
+        if(j != null && index >= 0) {
+            j.editScore(this, index, s);
+        }
     }
     
     public boolean hasScore() {
@@ -80,38 +166,30 @@ public class Team implements Comparable {
     }
     
     public boolean hasCompletedScore() {
-        for(Score s : scores) {
-            if(s.isCompleted()) {
-                return true;
-            }
-        }
-        return false;
+        return bestScore != null;
     }
     
     public Score getBestScore() {
-        if(!hasCompletedScore()) {
-            return null;
+        return bestScore;
+    }
+    
+    private boolean isBetter(double value) {
+        if(bestScore == null) {
+            return SORT_ORDER == SORT_ASCENDING ? value < SORT_MAX_MAGNITUDE :
+                                                  value > -1*SORT_MAX_MAGNITUDE;
         }
-        
-        Score bestScore = null;
-        double best = SORT_ORDER == SORT_DESCENDING ? -1*SORT_MAX_MAGNITUDE : SORT_MAX_MAGNITUDE;
+        return SORT_ORDER == SORT_ASCENDING ? value < bestScoreValue :
+                                              value > bestScoreValue;
+    }
+    
+    private void findBestScore() {
+        bestScore = null;
         for(Score s : scores) {
-            switch(SORT_ORDER) {
-                default:
-                    if(s.getScore() > best) {
-                        bestScore = s;
-                        best = s.getScore();
-                    }
-                    break;
-                case SORT_ASCENDING:
-                    if(s.getScore() < best) {
-                        bestScore = s;
-                        best = s.getScore();
-                    }
-                    break;
+            if(s.isCompleted() && isBetter(s.getScore())) {
+                bestScore = s;
+                bestScoreValue = s.getScore();
             }
         }
-        return bestScore;
     }
         
     public List<Score> getScores() {
@@ -119,48 +197,118 @@ public class Team implements Comparable {
     }
     
     public void setTiebreaker(double t) {
+        setTiebreaker(t, true);
+    }
+    
+    /**
+     * @param notify publish TEAM_TIEBREAKER_CHANGED, bulk imports announce
+     *               themselves with a single DATA_IMPORTED instead
+     */
+    void setTiebreaker(double t, boolean notify) {
         this.tiebreaker = t;
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.setTiebreaker(this, t);
+        }
+        if(notify) {
+            ControlCenter.triggerEvent(Event.team(
+                    UserEvent.TEAM_TIEBREAKER_CHANGED, teamNumber));
+        }
     }
     
     public final double getTiebreaker() {
-        return hasScore() ? getBestScore().getScore() : tiebreaker;
+        return bestScore != null ? bestScoreValue : tiebreaker;
+    }
+
+    /**
+     * @return the tiebreaker as it was set, even if the team has a score
+     */
+    double getStoredTiebreaker() {
+        return tiebreaker;
     }
     
     public void clearTiebreaker() {
+        clearTiebreaker(true);
+    }
+    
+    void clearTiebreaker(boolean notify) {
         tiebreaker = SORT_ORDER == SORT_DESCENDING ? 
                      -1*SORT_MAX_MAGNITUDE : SORT_MAX_MAGNITUDE;
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.clearTiebreaker(this);
+        }
+        if(notify) {
+            ControlCenter.triggerEvent(Event.team(
+                    UserEvent.TEAM_TIEBREAKER_CHANGED, teamNumber));
+        }
     }
     
     public void addAnnotation(String value) {
-        
+        addAnnotation(value, true);
+    }
+    
+    /**
+     * @param notify publish TEAM_ADDED_ANNOTATION, bulk imports announce
+     *               themselves with a single DATA_IMPORTED instead
+     */
+    void addAnnotation(String value, boolean notify) {
         if(!hasAnnotation(value)) {
             Log.d(1, "Team.addAnotation(" + teamNumber + "=" + teamName +
                      "): '" + value + "'");
             annotations.add(value);
-            Object[] params = { teamNumber, value };
-            ControlCenter.triggerEvent(UserEvent.TEAM_ADDED_ANNOTATION, params);
+            setAnnotationBit(internAnnotation(value), true);
+            standingsChanged();
+            Journal j = journal();
+            if(j != null) {
+                j.addAnnotation(this, value);
+            }
+            if(notify) {
+                ControlCenter.triggerEvent(Event.annotation(
+                        UserEvent.TEAM_ADDED_ANNOTATION, teamNumber, value));
+            }
         }
     }
     
     public boolean hasAnnotation(String value) {
-        for(String string : annotations) {
-            if(string.equals(value)) {
-                return true;
-            }
+        Integer id = annotationIDs.get(value);
+        if(id == null) {
+            return false;
+        }
+        if(id < 64) {
+            return (annotationMask & (1L << id)) != 0;
         }
-        return false;
+        return annotationOverflow != null && annotationOverflow.get(id);
+    }
+    
+    /**
+     * @param mask annotation mask created with getAnnotationMask
+     * @return true if the team has every annotation in the mask
+     */
+    public boolean hasAnnotations(long mask) {
+        return (annotationMask & mask) == mask;
     }
     
     public void removeAnnotation(String value) {
+        if(!hasAnnotation(value)) {
+            return;
+        }
         Iterator<String> it = annotations.listIterator();
         while(it.hasNext()) {
             if(it.next().equals(value)) {
                 Log.d(1, "Team.removeAnotation(" + teamNumber + "=" + teamName +
                          "): '" + value + "'");
                 it.remove();
-                Object[] params = { teamNumber, value };
-                ControlCenter.triggerEvent(UserEvent.TEAM_REMOVED_ANNOTATION, 
-                                           params);
+                setAnnotationBit(annotationIDs.get(value), false);
+                standingsChanged();
+                Journal j = journal();
+                if(j != null) {
+                    j.removeAnnotation(this, value);
+                }
+                ControlCenter.triggerEvent(Event.annotation(
+                        UserEvent.TEAM_REMOVED_ANNOTATION, teamNumber, value));
             }
         }
     }
@@ -170,24 +318,115 @@ public class Team implements Comparable {
     }
     
     public void clearAnnotations() {
+        clearAnnotations(true);
+    }
+    
+    void clearAnnotations(boolean notify) {
         annotations.clear();
-        ControlCenter.triggerEvent(UserEvent.TEAM_CLEARED_ANNOTATION, teamNumber);
+        annotationMask = 0;
+        annotationOverflow = null;
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.clearAnnotations(this);
+        }
+        if(notify) {
+            ControlCenter.triggerEvent(Event.team(
+                    UserEvent.TEAM_CLEARED_ANNOTATION, teamNumber));
+        }
+    }
+    
+    /**
+     * Replace all of this team's data at once, used to restore a snapshot.
+     * The standings are updated once instead of after every score.
+     */
+    void restore(List<Score> restoredScores, double restoredTiebreaker,
+                 String[] restoredAnnotations) {
+        scores.clear();
+        scores.addAll(restoredScores);
+        findBestScore();
+        tiebreaker = restoredTiebreaker;
+        annotations.clear();
+        annotationMask = 0;
+        annotationOverflow = null;
+        for(String value : restoredAnnotations) {
+            if(!hasAnnotation(value)) {
+                annotations.add(value);
+                setAnnotationBit(internAnnotation(value), true);
+            }
+        }
+        standingsChanged();
+        Journal j = journal();
+        if(j != null) {
+            j.clearScores(this);
+            for(Score s : scores) {
+                j.addScore(this, s);
+            }
+            j.setTiebreaker(this, tiebreaker);
+            j.clearAnnotations(this);
+            for(String value : annotations) {
+                j.addAnnotation(this, value);
+            }
+        }
+    }
+    
+    private void setAnnotationBit(int id, boolean set) {
+        if(id < 64) {
+            annotationMask = set ? annotationMask | (1L << id) :
+                                   annotationMask & ~(1L << id);
+        } else {
+            if(annotationOverflow == null) {
+                annotationOverflow = new BitSet();
+            }
+            annotationOverflow.set(id, set);
+        }
+    }
+    
+    public static synchronized int internAnnotation(String value) {
+        Integer id = annotationIDs.get(value);
+        if(id == null) {
+            id = annotationIDs.size();
+            annotationIDs.put(value, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Build a mask out of a list of annotations for hasAnnotations
+     *
+     * @return the mask, or -1 if one of the annotations was interned with
+     *         an ID that does not fit in the mask
+     */
+    public static long getAnnotationMask(List<String> values) {
+        long mask = 0;
+        for(String value : values) {
+            int id = internAnnotation(value);
+            if(id >= 64) {
+                return -1;
+            }
+            mask |= 1L << id;
+        }
+        return mask;
     }
     
     public static void setSortOrder(int n) {
         SORT_ORDER = n;
     }
     
+    public static int getSortOrder() {
+        return SORT_ORDER;
+    }
+    
     @Override
     public int compareTo(Object o) {
         Team t = (Team) o;
         switch(SORT_ORDER) {            
             case SORT_ASCENDING:
-                return (int) (this.getBestScore().getScore()*SORT_COMPARE_PRECISION -
-                        t.getBestScore().getScore()*SORT_COMPARE_PRECISION);
+                return (int) (this.bestScoreValue*SORT_COMPARE_PRECISION -
+                        t.bestScoreValue*SORT_COMPARE_PRECISION);
             default:
-                return (int) (t.getBestScore().getScore()*SORT_COMPARE_PRECISION - 
-                        this.getBestScore().getScore()*SORT_COMPARE_PRECISION);
+                return (int) (t.bestScoreValue*SORT_COMPARE_PRECISION - 
+                        this.bestScoreValue*SORT_COMPARE_PRECISION);
         }
     }
     
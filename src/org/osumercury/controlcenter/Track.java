@@ -0,0 +1,136 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+/**
+ * A scoring track (field) that runs one team's session at a time. A
+ * competition can have several tracks active at once, each with its own
+ * state, timer and current score, all committing into the same standings.
+ * The default track is the one driven by the control GUI and shown on the
+ * displays.
+ *
+ * @author wira
+ */
+public class Track {
+    public static final String DEFAULT = "main";
+
+    private final CompetitionState c;
+    private final String id;
+    private volatile int state = CompetitionState.IDLE;
+    private volatile SessionState session;
+    private volatile boolean redFlagged = false;
+    private SessionScheduler scheduler;
+
+    Track(CompetitionState c, String id) {
+        this.c = c;
+        this.id = id;
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public boolean isDefault() {
+        return DEFAULT.equals(id);
+    }
+
+    public CompetitionState getCompetitionState() {
+        return c;
+    }
+
+    public void newSession(Team t, int attempts, long setupDuration, long windowDuration) {
+        session = new SessionState(id, t, attempts, setupDuration, windowDuration);
+    }
+
+    public SessionState getSession() {
+        return session;
+    }
+
+    /**
+     * Start the current session and a scheduler that moves this track to
+     * RUN and POST_RUN when the session's time is up
+     */
+    public synchronized void startSession() {
+        stopScheduler();
+        scheduler = new SessionScheduler(this);
+        session.start();
+        scheduler.start();
+    }
+
+    public synchronized void stopScheduler() {
+        if(scheduler != null) {
+            scheduler.stop();
+            scheduler = null;
+        }
+    }
+
+    public void setState(int state) {
+        this.state = state;
+        // the default track's setup phase is ended by the control GUI's
+        // state hook, other tracks have nobody else to do it
+        if(state == CompetitionState.RUN && !isDefault()) {
+            session.endSetup();
+        }
+        ControlCenter.triggerEvent(
+                Event.index(UserEvent.STATE_TRANSITION, state).onTrack(id));
+        switch(state) {
+            case CompetitionState.IDLE:
+                ControlCenter.triggerEvent(
+                        Event.of(UserEvent.STATE_CHANGE_IDLE).onTrack(id));
+                break;
+            case CompetitionState.SETUP:
+                ControlCenter.triggerEvent(Event.setup(
+                        session.getActiveTeam().getNumber(),
+                        session.getMaxAttempts(),
+                        session.getSetupDuration()/1000,
+                        session.getWindowDuration()/1000).onTrack(id));
+                break;
+            case CompetitionState.RUN:
+                ControlCenter.triggerEvent(
+                        Event.of(UserEvent.STATE_CHANGE_RUN).onTrack(id));
+                break;
+            case CompetitionState.POST_RUN:
+                ControlCenter.triggerEvent(
+                        Event.of(UserEvent.STATE_CHANGE_POSTRUN).onTrack(id));
+                break;
+        }
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public void setRedFlag(boolean b) {
+        redFlagged = b;
+        ControlCenter.triggerEvent(Event.of(b ?
+                    UserEvent.SESSION_REDFLAGGED :
+                    UserEvent.SESSION_GREENFLAGGED).onTrack(id));
+    }
+
+    public boolean redFlagged() {
+        return redFlagged;
+    }
+
+    /**
+     * @return the team this track is currently running a session for, or
+     *         null if the track is idle
+     */
+    public Team getActiveTeam() {
+        SessionState s = session;
+        return state == CompetitionState.IDLE || s == null ?
+                null : s.getActiveTeam();
+    }
+}
@@ -46,7 +46,9 @@ public interface UserEvent {
     public static final int TEAM_ADDED_ANNOTATION       = 21;
     public static final int TEAM_REMOVED_ANNOTATION     = 22;
     public static final int TEAM_CLEARED_ANNOTATION     = 23;
+    public static final int SCORE_CHANGED               = 24;
+    // raised before the STATE_CHANGE_* events, see CompetitionState.setState
+    public static final int STATE_TRANSITION            = 25;
+    public static final int TEAM_TIEBREAKER_CHANGED     = 26;
     public static final int EXIT                        = 200;
-            
-    public abstract void callback(int eventID, Object param);
 }
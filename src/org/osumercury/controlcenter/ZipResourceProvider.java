@@ -0,0 +1,195 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Resources inside a zip archive. Only the central directory is read when
+ * the archive is opened, an entry is inflated when it is opened and
+ * nothing is extracted to the disk.
+ *
+ * Every directory of the archive shares the same open ZipFile, closing
+ * any of them closes the archive.
+ *
+ * @author wira
+ */
+public class ZipResourceProvider implements ResourceProvider {
+    private final File file;
+    private final ZipFile zip;
+    private final Map<String, ZipEntry> entries;
+    private final Set<String> directories;
+    private final String prefix; // "" or "dir/", null if outside the archive
+
+    private ZipResourceProvider(File file, ZipFile zip,
+                                Map<String, ZipEntry> entries,
+                                Set<String> directories, String prefix) {
+        this.file = file;
+        this.zip = zip;
+        this.entries = entries;
+        this.directories = directories;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Open the archive and index its entries
+     */
+    public static ZipResourceProvider open(File f) throws IOException {
+        ZipFile zip = new ZipFile(f);
+        Map<String, ZipEntry> entries = new HashMap<>();
+        Set<String> directories = new HashSet<>();
+        Enumeration<? extends ZipEntry> e = zip.entries();
+        while(e.hasMoreElements()) {
+            ZipEntry z = e.nextElement();
+            String name = z.getName();
+            if(!z.isDirectory()) {
+                entries.put(name, z);
+            }
+            int slash = name.indexOf('/');
+            while(slash >= 0) {
+                directories.add(name.substring(0, slash + 1));
+                slash = name.indexOf('/', slash + 1);
+            }
+        }
+        Log.d(0, "ZipResourceProvider.open: " + f + ", " + entries.size() +
+                 " file(s)");
+        return new ZipResourceProvider(f, zip, entries, directories, "");
+    }
+
+    /**
+     * @return full path of the last file in the archive whose name ends with
+     *         the suffix, or null if there is none
+     */
+    public String find(String suffix) {
+        String found = null;
+        Enumeration<? extends ZipEntry> e = zip.entries();
+        while(e.hasMoreElements()) {
+            String name = e.nextElement().getName();
+            if(name.endsWith(suffix) && entries.containsKey(name)) {
+                found = name;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String getName() {
+        if(prefix == null || prefix.isEmpty()) {
+            return file.getName();
+        }
+        int slash = prefix.lastIndexOf('/', prefix.length() - 2);
+        return prefix.substring(slash + 1, prefix.length() - 1);
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return prefix != null &&
+               (prefix.isEmpty() || directories.contains(prefix));
+    }
+
+    @Override
+    public List<String> list() {
+        List<String> names = new ArrayList<>();
+        if(prefix != null) {
+            for(String name : entries.keySet()) {
+                if(name.startsWith(prefix) &&
+                   name.indexOf('/', prefix.length()) < 0) {
+                    names.add(name.substring(prefix.length()));
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private ZipEntry entry(String name) {
+        return prefix == null ? null : entries.get(prefix + name);
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return entry(name) != null;
+    }
+
+    @Override
+    public long size(String name) {
+        ZipEntry z = entry(name);
+        return z == null ? -1 : z.getSize();
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        ZipEntry z = entry(name);
+        if(z == null) {
+            throw new FileNotFoundException(getLocation(name));
+        }
+        return zip.getInputStream(z);
+    }
+
+    @Override
+    public String getLocation(String name) {
+        return file.getPath() + "!/" + (prefix == null ? "../" : prefix) + name;
+    }
+
+    @Override
+    public ResourceProvider resolve(String path) {
+        if(prefix == null) {
+            return this;
+        }
+        Deque<String> parts = new ArrayDeque<>();
+        for(String part : (prefix + path).split("[/\\\\]+")) {
+            if(part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if(part.equals("..")) {
+                if(parts.isEmpty()) {
+                    return new ZipResourceProvider(file, zip, entries,
+                                                   directories, null);
+                }
+                parts.removeLast();
+            } else {
+                parts.addLast(part);
+            }
+        }
+        return new ZipResourceProvider(file, zip, entries, directories,
+                parts.isEmpty() ? "" : String.join("/", parts) + "/");
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    @Override
+    public String toString() {
+        return getLocation("");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the memory a thread allocates while rendering frames and the
+ * time the JVM spends in garbage collection, for the render time output.
+ * Allocation is only reported on JVMs that support per-thread allocation
+ * counters.
+ *
+ * @author wira
+ */
+class AllocationMeter {
+    private static final long WINDOW_NS = 1000000000L;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private long frameStart;
+    private long frames = 0;
+    private long bytes = 0;
+    private long windowStart = System.nanoTime();
+    private long windowGcMs = gcTimeMs();
+    private long bytesPerFrame = -1;
+    private long gcMsPerSecond = 0;
+
+    AllocationMeter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean t = null;
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            t = (com.sun.management.ThreadMXBean) bean;
+            if(!t.isThreadAllocatedMemorySupported()) {
+                t = null;
+            } else if(!t.isThreadAllocatedMemoryEnabled()) {
+                t.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        threads = t;
+    }
+
+    private static long gcTimeMs() {
+        long ms = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return ms;
+    }
+
+    private long allocated() {
+        return threads == null ? -1 :
+               threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Call on the rendering thread before the frame is rendered
+     */
+    void beginFrame() {
+        frameStart = allocated();
+    }
+
+    /**
+     * Call on the rendering thread after the frame was rendered, the
+     * averages are updated once a second
+     */
+    void endFrame() {
+        if(frameStart >= 0) {
+            bytes += allocated() - frameStart;
+        }
+        frames++;
+        long now = System.nanoTime();
+        if(now - windowStart >= WINDOW_NS) {
+            long gcMs = gcTimeMs();
+            bytesPerFrame = threads == null ? -1 : bytes / frames;
+            gcMsPerSecond = (gcMs - windowGcMs) * WINDOW_NS / (now - windowStart);
+            windowStart = now;
+            windowGcMs = gcMs;
+            frames = 0;
+            bytes = 0;
+        }
+    }
+
+    /**
+     * @return average bytes allocated per frame over the last second, or -1
+     *         if not supported
+     */
+    long getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    /**
+     * @return milliseconds spent in garbage collection during the last
+     *         second, by any thread
+     */
+    long getGcMsPerSecond() {
+        return gcMsPerSecond;
+    }
+}
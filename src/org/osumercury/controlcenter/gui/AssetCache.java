@@ -0,0 +1,274 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.osumercury.controlcenter.Exporter;
+import org.osumercury.controlcenter.Log;
+
+/**
+ * Content-addressed disk cache of scaled assets. An entry is named after
+ * a hash of the source pixels and the operation that produced it (method
+ * and target size), so the same work at the same resolution is done once
+ * across restarts. Colorized digits and fonts are cached by their colored
+ * pixels, a theme color change gives new entries. Stale entries are never
+ * looked up again and are pruned by age.
+ *
+ * Entries are deflated: int MAGIC, VERSION, image type, width, height,
+ * then the pixels as ints. Only images with int pixels are cached.
+ * Entries are written in the background.
+ *
+ * @author wira
+ */
+public class AssetCache {
+    public static final String EXTENSION = "px";
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int MAGIC = 0x4D505843; // "MPXC"
+    private static final int VERSION = 1;
+
+    private static volatile File dir;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final Map<BufferedImage, Long> fingerprints = new WeakHashMap<>();
+    private static final ExecutorService writer =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "AssetCache");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * @return default cache directory in the user's home
+     */
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home"),
+                        ".merccc" + File.separator + "cache");
+    }
+
+    /**
+     * Enable the cache in the directory, entries beyond maxBytes are pruned
+     * in the background, oldest first
+     *
+     * @param d cache directory, or null to disable the cache
+     */
+    public static void setDirectory(File d, long maxBytes) {
+        if(d != null && !d.isDirectory() && !d.mkdirs()) {
+            Log.err("AssetCache: unable to create " + d + ", cache disabled");
+            d = null;
+        }
+        dir = d;
+        if(d != null) {
+            Log.d(0, "AssetCache: " + d);
+            final File pruneDir = d;
+            writer.submit(() -> prune(pruneDir, maxBytes));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Get the result of an operation on a source image from the cache, or
+     * compute and cache it
+     *
+     * @param src source image
+     * @param op description of the operation and all of its parameters
+     * @param compute computes the result if it is not cached
+     */
+    public static BufferedImage get(BufferedImage src, String op,
+                                    Supplier<BufferedImage> compute) {
+        File d = dir;
+        if(d == null) {
+            return compute.get();
+        }
+        File f = new File(d, String.format("%016x", fingerprint(src)) + "-" +
+                             op + "." + EXTENSION);
+        if(f.isFile()) {
+            BufferedImage img = read(f);
+            if(img != null) {
+                hits.incrementAndGet();
+                f.setLastModified(System.currentTimeMillis());
+                return img;
+            }
+        }
+        misses.incrementAndGet();
+        BufferedImage img = compute.get();
+        int type = img.getType();
+        if(type == BufferedImage.TYPE_INT_ARGB ||
+           type == BufferedImage.TYPE_INT_RGB) {
+            int w = img.getWidth();
+            int h = img.getHeight();
+            int[] px = (int[]) img.getRaster().getDataElements(0, 0, w, h, null);
+            writer.submit(() -> write(f, type, w, h, px));
+        }
+        return img;
+    }
+
+    /**
+     * @return 64-bit hash of the image's size and pixels, remembered for
+     *         the image until forget is called for it
+     */
+    public static long fingerprint(BufferedImage img) {
+        synchronized(fingerprints) {
+            Long hash = fingerprints.get(img);
+            if(hash != null) {
+                return hash;
+            }
+        }
+        long hash = hash(img);
+        synchronized(fingerprints) {
+            fingerprints.put(img, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Drop the remembered hash of an image, must be called after the
+     * image is modified in place (e.g. recolored by a theme)
+     */
+    public static void forget(BufferedImage img) {
+        synchronized(fingerprints) {
+            fingerprints.remove(img);
+        }
+    }
+
+    private static long hash(BufferedImage img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int type = img.getType();
+        boolean raw = type == BufferedImage.TYPE_INT_ARGB ||
+                      type == BufferedImage.TYPE_INT_RGB;
+        long hash = 0xcbf29ce484222325L ^ (((long) w << 32) | h);
+        int[] row = new int[w];
+        for(int y = 0; y < h; y++) {
+            if(raw) {
+                img.getRaster().getDataElements(0, y, w, 1, row);
+            } else {
+                img.getRGB(0, y, w, 1, row, 0, w);
+            }
+            for(int p : row) {
+                hash = (hash ^ p) * 0x100000001b3L;
+            }
+        }
+        // final mix so nearby inputs spread over the whole key
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static String getStats() {
+        File d = dir;
+        return d == null ? "disabled" :
+               d + ", " + hits.get() + " hit(s), " + misses.get() + " miss(es)";
+    }
+
+    private static BufferedImage read(File f) {
+        try(DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new BufferedInputStream(new FileInputStream(f), 65536)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int type = in.readInt();
+            int w = in.readInt();
+            int h = in.readInt();
+            byte[] bytes = new byte[w * h * 4];
+            in.readFully(bytes);
+            int[] px = new int[w * h];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(px);
+            BufferedImage img = new BufferedImage(w, h, type);
+            img.getRaster().setDataElements(0, 0, w, h, px);
+            return img;
+        } catch(IOException | RuntimeException e) {
+            Log.d(0, "AssetCache: unable to read " + f + ": " + e);
+            return null;
+        }
+    }
+
+    private static void write(File f, int type, int w, int h, int[] px) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            Exporter.writeChannel(f, ch -> {
+                DeflaterOutputStream z = new DeflaterOutputStream(
+                        Channels.newOutputStream(ch), deflater, 65536);
+                DataOutputStream out = new DataOutputStream(z);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(type);
+                out.writeInt(w);
+                out.writeInt(h);
+                ByteBuffer bytes = ByteBuffer.allocate(px.length * 4);
+                bytes.asIntBuffer().put(px);
+                out.write(bytes.array());
+                out.flush();
+                z.finish();
+            });
+            Log.d(2, "AssetCache: wrote " + f.getName());
+        } catch(IOException e) {
+            Log.d(0, "AssetCache: unable to write " + f + ": " + e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void prune(File d, long maxBytes) {
+        File[] files = d.listFiles((parent, name) -> name.endsWith("." + EXTENSION));
+        if(files == null) {
+            return;
+        }
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long total = 0;
+        for(int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+            total += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+        int pruned = 0;
+        for(int i = 0; i < order.length && total > maxBytes; i++) {
+            File f = files[order[i]];
+            long size = f.length();
+            if(f.delete()) {
+                total -= size;
+                pruned++;
+            }
+        }
+        Log.d(1, "AssetCache: " + (files.length - pruned) + " entries, " +
+                 total / 1024 + " KB" +
+                 (pruned > 0 ? ", pruned " + pruned : ""));
+    }
+}
@@ -18,22 +18,34 @@ package org.osumercury.controlcenter.gui;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import javax.imageio.ImageIO;
 import java.awt.Image;
 import org.imgscalr.Scalr;
+import org.osumercury.controlcenter.DirectoryResourceProvider;
 import org.osumercury.controlcenter.Log;
+import org.osumercury.controlcenter.ResourceProvider;
 
 /**
  *
  * @author wira
  */
 public class Assets {
-    private static HashMap<String, BufferedImage> rImages = new HashMap<>();
-    private static HashMap<String, String> rSounds = new HashMap<>();
+    private static final Map<String, ImageAsset> rImages = new ConcurrentHashMap<>();
+    private static final Map<String, ResourceProvider> rSounds = new ConcurrentHashMap<>();
     private static BufferedImage[] primaryColorDigits = new BufferedImage[14];
     private static BufferedImage[] secondaryColorDigits = new BufferedImage[14];
     private static BufferedImage[] blackDigits = new BufferedImage[14];
@@ -56,6 +68,64 @@ public class Assets {
     public static final int DIGITS_MODERN = 0;
     public static final int DIGITS_CLASSIC = 1;
     
+    /**
+     * Index entry of an image asset, the image is decoded on first use
+     */
+    private static final class ImageAsset {
+        private final String name;
+        private final ResourceProvider source;
+        private volatile BufferedImage image;
+        private volatile boolean failed;
+        private long decodeNanos;
+        private long bytes;
+        
+        private ImageAsset(String name, ResourceProvider source) {
+            this.name = name;
+            this.source = source;
+        }
+        
+        private BufferedImage get() {
+            BufferedImage img = image;
+            if(img != null || failed) {
+                return img;
+            }
+            synchronized(this) {
+                if(image == null && !failed) {
+                    decode();
+                }
+                return image;
+            }
+        }
+        
+        private void decode() {
+            long start = System.nanoTime();
+            BufferedImage img = null;
+            try(InputStream in = new BufferedInputStream(source.open(name))) {
+                img = ImageIO.read(in);
+            } catch(IOException ioe) {
+                Log.d(0, "Assets: I/O exception, the resource is not loaded: " + ioe.getMessage());
+            }
+            decodeNanos = System.nanoTime() - start;
+            if(img == null) {
+                Log.d(0, "Assets: unable to decode " + source.getLocation(name));
+                failed = true;
+                return;
+            }
+            DataBuffer buf = img.getRaster().getDataBuffer();
+            bytes = (long) buf.getSize() * buf.getNumBanks() *
+                    DataBuffer.getDataTypeSize(buf.getDataType()) / 8;
+            Log.d(1, "Assets: decoded " + source.getLocation(name) + " " +
+                     img.getWidth() + "x" + img.getHeight() + " in " +
+                     decodeNanos / 1000000 + " ms, " + bytes / 1024 + " KB");
+            image = img;
+        }
+    }
+    
+    static {
+        // decode streams in memory instead of through a temporary file
+        ImageIO.setUseCache(false);
+    }
+    
     public static void loadInternalAssets() {
         try {
             missingAsset = ImageIO.read(Assets.class.getResource("/org/osumercury/controlcenter/gui/missing-asset.png"));
@@ -82,38 +152,39 @@ public class Assets {
     }
 
     public static boolean load(String resourcePath) {
-        Log.d(0, "Assets.load: loading assets from '" + resourcePath +"'...");
-        String fileList[];
-        File d = new File(resourcePath);
-        if(!d.exists()) {
-            Log.d(0, "Assets.load: " + resourcePath + " does not exist.");
+        return load(new DirectoryResourceProvider(new File(resourcePath)));
+    }
+    
+    /**
+     * Index the image and sound assets of the resource directory. Files are
+     * only read when an asset is first used.
+     */
+    public static boolean load(ResourceProvider resources) {
+        Log.d(0, "Assets.load: loading assets from '" + resources +"'...");
+        if(resources == null) {
             return false;
-        } else if(!d.isDirectory()) {
-            Log.d(0, "Assets.load: " + resourcePath + " is not a directory.");
+        } else if(!resources.isDirectory()) {
+            Log.d(0, "Assets.load: " + resources + " does not exist or is " +
+                     "not a directory.");
             return false;
         }
 
         Log.d(0, "Assets.load: enumerating resources...");
-        fileList = d.list();
-        for(int i = 0; i < fileList.length; i++) {
-            if(fileList[i].endsWith(".png") || fileList[i].endsWith(".jpg")) {
-                if(rImages.containsKey(fileList[i])) {
-                    Log.d(0, "Assets.load: asset '" + fileList[i] + "' is already defined.");
+        for(String name : resources.list()) {
+            if(name.endsWith(".png") || name.endsWith(".jpg")) {
+                if(rImages.containsKey(name)) {
+                    Log.d(0, "Assets.load: asset '" + name + "' is already defined.");
                 } else {
-                    try {
-                        Log.d(1, "Assets.load: [img] " + fileList[i]);
-                        rImages.put(fileList[i], ImageIO.read(new File(resourcePath + "/" + fileList[i])));
-                    } catch(IOException ioe) {
-                        Log.d(0, "Assets.load: I/O exception, the resource is not loaded: " + ioe.getMessage());
-                    }
+                    Log.d(1, "Assets.load: [img] " + name);
+                    rImages.put(name, new ImageAsset(name, resources));
                 }
             }
-            else if(fileList[i].endsWith(".wav")) {
-                if(rSounds.containsKey(fileList[i])) {
-                    Log.d(0, "Assets.load: asset '" + fileList[i] + "' is already defined.");
+            else if(name.endsWith(".wav")) {
+                if(rSounds.containsKey(name)) {
+                    Log.d(0, "Assets.load: asset '" + name + "' is already defined.");
                 } else {
-                    Log.d(1, "Assets.load: [wav] " + fileList[i]);
-                    rSounds.put(fileList[i], resourcePath + "/" + fileList[i]);
+                    Log.d(1, "Assets.load: [wav] " + name);
+                    rSounds.put(name, resources);
                 }
             }
         }
@@ -125,7 +196,7 @@ public class Assets {
         return true;
     }
     
-    public static void theme(HashMap<String, String> theme) {
+    public static void theme(Map<String, String> theme) {
         if(theme == null) {
             return;
         }
@@ -443,6 +514,8 @@ public class Assets {
         }
         g.drawImage(fg, null, 0, 0);
         g.dispose();
+        // the pixels changed, so must the cache key of anything scaled from it
+        AssetCache.forget(image);
     }
  
     public static BufferedImage getMercuryLogo(int height) {
@@ -458,12 +531,50 @@ public class Assets {
         return scale(mercuryLogo, (int)((double)height/mercuryLogo.getHeight()*mercuryLogo.getWidth()), height);
     }
 
+    /**
+     * @return true if the asset is in the resource directory and was not
+     *         found to be unreadable
+     */
     public static boolean doesAssetExist(String key) {
-        return rImages.containsKey(key);
+        ImageAsset a = rImages.get(key);
+        return a != null && !a.failed;
+    }
+    
+    /**
+     * @return the decoded image, or null if there is no such asset or it
+     *         could not be decoded
+     */
+    private static BufferedImage image(String key) {
+        ImageAsset a = rImages.get(key);
+        return a == null ? null : a.get();
+    }
+    
+    /**
+     * Decode image assets in parallel on the common fork-join pool so they
+     * are ready before they are first drawn. Names that are not assets are
+     * ignored.
+     * 
+     * @param keys names of the assets
+     * @return task that completes when every asset was decoded
+     */
+    public static ForkJoinTask<?> warmUp(Collection<String> keys) {
+        List<ImageAsset> assets = new ArrayList<>();
+        for(String key : new TreeSet<>(keys)) {
+            ImageAsset a = rImages.get(key);
+            if(a != null) {
+                assets.add(a);
+            }
+        }
+        return ForkJoinPool.commonPool().submit(() -> {
+            long start = System.nanoTime();
+            assets.parallelStream().forEach(ImageAsset::get);
+            Log.d(0, "Assets.warmUp: " + assets.size() + " image(s) ready in " +
+                     (System.nanoTime() - start) / 1000000 + " ms");
+        });
     }
 
     public static BufferedImage getAsset(String key, double width) {
-        BufferedImage img = rImages.get(key);
+        BufferedImage img = image(key);
         if(img == null) {
             Log.d(0, "Assets.getAsset: asset not found: '" + key + "'");
             return scale(missingAsset, (int)width, (int)(width/missingAsset.getWidth()*missingAsset.getHeight()));
@@ -472,7 +583,7 @@ public class Assets {
     }
 
     public static Image getAsset(String key, double width, double height) {
-        BufferedImage img = rImages.get(key);
+        BufferedImage img = image(key);
         if(img == null) {
             Log.d(0, "Assets.getAsset: asset not found: '" + key + "'");
             return (Image) missingAsset.getScaledInstance((int)width, (int)height, Image.SCALE_SMOOTH);
@@ -481,7 +592,7 @@ public class Assets {
     }
 
     public static BufferedImage getAsset(String key) {
-        BufferedImage img = rImages.get(key);
+        BufferedImage img = image(key);
         if(img == null) {
             Log.d(0, "Assets.getAsset: asset not found: '" + key + "'");
             return missingAsset;
@@ -489,8 +600,15 @@ public class Assets {
         return img;
     }
 
-    public static String getSoundAssetPath(String key) {
-        return rSounds.get(key);
+    /**
+     * @throws FileNotFoundException if there is no such sound asset
+     */
+    public static InputStream openSoundAsset(String key) throws IOException {
+        ResourceProvider source = rSounds.get(key);
+        if(source == null) {
+            throw new FileNotFoundException(key);
+        }
+        return new BufferedInputStream(source.open(key));
     }
     
     // populate digits clipped with default font dimensions
@@ -750,7 +868,7 @@ public class Assets {
     }
     
     public static BufferedImage getLogoW(int width) {
-        BufferedImage img = rImages.get("logo.png");
+        BufferedImage img = image("logo.png");
         if(img == null) {
             img = mercuryLogo;
         }
@@ -759,7 +877,7 @@ public class Assets {
     }
     
     public static BufferedImage getLogoH(int height) {
-        BufferedImage img = rImages.get("logo.png");
+        BufferedImage img = image("logo.png");
         if(img == null) {
             img = mercuryLogo;
         }
@@ -795,12 +913,15 @@ public class Assets {
     
     public static BufferedImage scale(BufferedImage src, int width, int height) {
         // we're for sure don't want an image with 0 dimension
-        width = width == 0 ? 1 : width;
-        height = height == 0 ? 1 : height;
-        BufferedImage result = Scalr.resize(src, Scalr.Method.ULTRA_QUALITY, width, height,
-                Scalr.OP_ANTIALIAS);
-
-        return result;
+        int w = width == 0 ? 1 : width;
+        int h = height == 0 ? 1 : height;
+        if(w == src.getWidth() && h == src.getHeight()) {
+            return Scalr.resize(src, Scalr.Method.ULTRA_QUALITY, w, h,
+                                Scalr.OP_ANTIALIAS);
+        }
+        return AssetCache.get(src, "ultra-aa-" + w + "x" + h, () ->
+                Scalr.resize(src, Scalr.Method.ULTRA_QUALITY, w, h,
+                             Scalr.OP_ANTIALIAS));
     }
     
     public static BufferedImage fastScale(BufferedImage src, int width, int height) {
@@ -840,18 +961,35 @@ public class Assets {
     }
     
     public static String getAssetInfo() {
-        String ret = "Image assets:\n" +
-                     "-------------\n";
-        for(String key : rImages.keySet()) {
-            ret += key + "\n";
+        String ret = "Image assets (decoded on first use):\n" +
+                     "------------------------------------\n";
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for(String key : new TreeSet<>(rImages.keySet())) {
+            ImageAsset a = rImages.get(key);
+            BufferedImage img = a.image;
+            if(img != null) {
+                ret += String.format("%-32s %5dx%-5d %8.1f ms %8d KB\n", key,
+                        img.getWidth(), img.getHeight(),
+                        a.decodeNanos / 1e6, a.bytes / 1024);
+                totalNanos += a.decodeNanos;
+                totalBytes += a.bytes;
+            } else {
+                ret += String.format("%-32s %s\n", key,
+                        a.failed ? "unreadable" : "not loaded");
+            }
         }
+        ret += String.format("%-32s %11s %8.1f ms %8d KB\n", "total", "",
+                totalNanos / 1e6, totalBytes / 1024);
         
         ret += "\nAudio assets (load-on-use):\n" +
                  "---------------------------\n";
-        for(Map.Entry<String, String> entry : rSounds.entrySet()) {
-            ret += entry.getValue() + "\n";
+        for(Map.Entry<String, ResourceProvider> entry : rSounds.entrySet()) {
+            ret += entry.getValue().getLocation(entry.getKey()) + "\n";
         }
         
+        ret += "\nScaled asset cache: " + AssetCache.getStats() + "\n";
+        
         return ret;
     }
 }
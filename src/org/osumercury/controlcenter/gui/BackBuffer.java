@@ -0,0 +1,153 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Off-screen image a canvas renders its frame into before copying it to
+ * the screen. The image is kept across frames and only reallocated when the
+ * size or the screen changes, so a frame can update only the regions that
+ * changed and the previous frame can be shown again without rendering. A
+ * VolatileImage compatible with the screen is used when the canvas is on
+ * one, so the frame can stay in video memory, otherwise (e.g. headless) a
+ * BufferedImage.
+ *
+ * Usage, the frame is rendered again if the video memory was lost:
+ * <pre>
+ * do {
+ *     Graphics2D g = buffer.begin(w, h);
+ *     render(g);
+ *     g.dispose();
+ * } while(buffer.contentsLost());
+ * buffer.show(screenGraphics);
+ * </pre>
+ *
+ * @author wira
+ */
+class BackBuffer {
+    private final Component owner;
+    private VolatileImage volatileImage;
+    private BufferedImage image;
+    private int w, h;
+    private long allocations = 0;
+    private boolean reset;
+    private boolean lost;
+
+    BackBuffer(Component owner) {
+        this.owner = owner;
+    }
+
+    Graphics2D begin(int width, int height) {
+        GraphicsConfiguration gc = owner.getGraphicsConfiguration();
+        reset = lost;
+        lost = false;
+        if(gc != null) {
+            image = null;
+            int status = volatileImage == null ? VolatileImage.IMAGE_INCOMPATIBLE :
+                         volatileImage.validate(gc);
+            if(status == VolatileImage.IMAGE_INCOMPATIBLE ||
+               w != width || h != height) {
+                if(volatileImage != null) {
+                    volatileImage.flush();
+                }
+                volatileImage = gc.createCompatibleVolatileImage(width, height);
+                allocated(width, height);
+            } else if(status == VolatileImage.IMAGE_RESTORED) {
+                reset = true;
+            }
+            return volatileImage.createGraphics();
+        }
+        volatileImage = null;
+        if(image == null || w != width || h != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            allocated(width, height);
+        }
+        return image.createGraphics();
+    }
+
+    private void allocated(int width, int height) {
+        w = width;
+        h = height;
+        allocations++;
+        reset = true;
+    }
+
+    /**
+     * @return true if the last begin() could not keep the previous frame,
+     *         the whole frame has to be rendered
+     */
+    boolean wasReset() {
+        return reset;
+    }
+
+    /**
+     * @return true if the buffer holds a complete frame of this size that
+     *         can be shown again without rendering
+     */
+    boolean isCurrent(int width, int height) {
+        if(w != width || h != height) {
+            return false;
+        }
+        GraphicsConfiguration gc = owner.getGraphicsConfiguration();
+        if(volatileImage != null) {
+            if(gc == null || volatileImage.validate(gc) != VolatileImage.IMAGE_OK ||
+               volatileImage.contentsLost()) {
+                lost = true;
+                return false;
+            }
+            return true;
+        }
+        return image != null && gc == null;
+    }
+
+    /**
+     * @return true if the video memory of the frame was lost while it was
+     *         rendered, the frame has to be rendered again
+     */
+    boolean contentsLost() {
+        return volatileImage != null && volatileImage.contentsLost();
+    }
+
+    void show(Graphics g) {
+        g.drawImage(getImage(), 0, 0, null);
+    }
+
+    Image getImage() {
+        return volatileImage != null ? volatileImage : image;
+    }
+
+    int getWidth() {
+        return w;
+    }
+
+    int getHeight() {
+        return h;
+    }
+
+    /**
+     * @return number of times the buffer was (re)allocated
+     */
+    long getAllocations() {
+        return allocations;
+    }
+}
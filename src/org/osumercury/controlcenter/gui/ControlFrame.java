@@ -16,11 +16,14 @@
 package org.osumercury.controlcenter.gui;
 
 import org.osumercury.controlcenter.UserEvent;
+import org.osumercury.controlcenter.Event;
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import java.io.File;
+import java.io.IOException;
 import org.osumercury.controlcenter.*;
 
 /**
@@ -30,8 +33,9 @@ import org.osumercury.controlcenter.*;
 public class ControlFrame extends JFrame {
     private CompetitionState competition;
     private ControlCenter cc;
-    private SessionTimer timer;
+    private SessionScheduler timer;
     private DisplayFrame display;
+    private int dataViewVersion = -1;
         
     private static int setupDuration;
     private static int windowDuration;
@@ -212,7 +216,8 @@ public class ControlFrame extends JFrame {
         btnRefreshScreens.addActionListener((ActionEvent e) -> { refreshDisplayList(); } );
         cmbDisplayMode.addActionListener((ActionEvent e) -> {
             display.setMode(cmbDisplayMode.getSelectedIndex());
-            ControlCenter.triggerEvent(UserEvent.DISPLAY_MODE_CHANGE, cmbDisplayMode.getSelectedIndex());
+            ControlCenter.triggerEvent(Event.index(UserEvent.DISPLAY_MODE_CHANGE,
+                    cmbDisplayMode.getSelectedIndex()));
         });
         
         cmbDisplayScreen.addActionListener((ActionEvent e) -> {
@@ -264,7 +269,8 @@ public class ControlFrame extends JFrame {
         btnStartTeamSession.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
 
         cmbTeamSelect.addActionListener((ActionEvent e) -> {
-            ControlCenter.triggerEvent(UserEvent.TEAM_PRE_SELECT, getSelectedTeamID());
+            ControlCenter.triggerEvent(Event.team(UserEvent.TEAM_PRE_SELECT,
+                    getSelectedTeamID()));
         });
         
         btnStartTeamSession.addActionListener((ActionEvent e) -> {
@@ -542,13 +548,12 @@ public class ControlFrame extends JFrame {
             dialog.setLocationRelativeTo(this);
             dialog.setVisible(true);
             if(dialog.isApproved()) {
-                Data.lock().writeLock().lock();
+                Data.lock().lockWrite();
                 try {
                     competition.getTeamByID(teamID).setTiebreaker(dialog.getValueDouble());
-                    competition.sort();
                     tblClassification.setModel(Data.getResultsTableModel(competition));
                 } finally {
-                    Data.lock().writeLock().unlock();
+                    Data.lock().unlockWrite();
                 }
             }
         });
@@ -560,11 +565,11 @@ public class ControlFrame extends JFrame {
             int teamID = Integer.parseInt((String)tblClassification.getValueAt(
                     tblClassification.getSelectedRow(), 1));
             Team t = competition.getTeamByID(teamID);
-            Data.lock().writeLock().lock();
+            Data.lock().lockWrite();
             try {
                 t.clearTiebreaker();
             } finally {
-                Data.lock().writeLock().unlock();
+                Data.lock().unlockWrite();
             }
             updateDataView();
         });
@@ -598,7 +603,8 @@ public class ControlFrame extends JFrame {
         cmbStartingRank.addItem("41-50");
         cmbStartingRank.addActionListener((ActionEvent e) -> {
             int rankStart = cmbStartingRank.getSelectedIndex()*10+1;
-            ControlCenter.triggerEvent(UserEvent.DISPLAY_RANK_START, rankStart);
+            ControlCenter.triggerEvent(Event.index(UserEvent.DISPLAY_RANK_START,
+                    rankStart));
             display.setRankStart(rankStart);
         });
         
@@ -808,7 +814,7 @@ public class ControlFrame extends JFrame {
         //</editor-fold>
 
         validate();
-        ControlCenter.triggerEvent(UserEvent.GUI_INIT, this);
+        ControlCenter.triggerEvent(Event.of(UserEvent.GUI_INIT, this));
         pack();
         setSize(INITIAL_WIDTH, INITIAL_HEIGHT);
         setVisible(true);
@@ -982,7 +988,7 @@ public class ControlFrame extends JFrame {
             case CompetitionState.IDLE:
                 setTitle("Mercury Control Center (" + Config.getConfigFile().getName() + ")");
                 if(timer != null) {
-                    timer.stopTimer();
+                    timer.stop();
                     timer = null;
                 }
                 // enable team selection controls
@@ -1013,12 +1019,12 @@ public class ControlFrame extends JFrame {
                 btnStartTeamSession.setForeground(Color.RED);
                 
                 if(timer != null) {
-                    timer.stopTimer();
+                    timer.stop();
                 }
                 Team t = competition.getTeamByID(getSelectedTeamID());
                 competition.newSession(t,
                         maxAttempts, setupDuration*1000, windowDuration*1000);
-                timer = new SessionTimer(competition);
+                timer = new SessionScheduler(competition);
                 indicators.set(competition.getSession());
                 competition.getSession().start();
                 timer.start();                
@@ -1048,7 +1054,7 @@ public class ControlFrame extends JFrame {
                 btnDiscardScore.setEnabled(false);
                 btnAddTime.setEnabled(false);
                 if(timer != null) {
-                    timer.stopTimer();
+                    timer.stop();
                     timer = null;
                 }
                 break;
@@ -1077,11 +1083,11 @@ public class ControlFrame extends JFrame {
             return;
         }
         
-        ControlCenter.triggerEvent(UserEvent.EXIT, null);
+        ControlCenter.triggerEvent(Event.of(UserEvent.EXIT));
         
         if(timer != null) {
             // warn of current run
-            timer.stopTimer();
+            timer.stop();
         }
         
         ControlCenter.exit(0);
@@ -1124,7 +1130,7 @@ public class ControlFrame extends JFrame {
     
     public boolean populateScore(Score s, JTextField[] fields) {
         int i = 0;
-        String[] keys = Config.getKeysInOriginalOrder("fields").toArray(new String[0]);
+        String[] keys = Config.getKeyArray("fields");
         if(fields.length != keys.length) {
             return false;
         }
@@ -1134,7 +1140,7 @@ public class ControlFrame extends JFrame {
                     competition.getSession().modifyCurrentScore(
                             key, Double.parseDouble(fields[i].getText()));
                 } else {
-                    s.setValue(key, Double.parseDouble(fields[i].getText()));
+                    s.setValue(i, Double.parseDouble(fields[i].getText()));
                 }
             } catch(NumberFormatException nfe) {
                 JOptionPane.showMessageDialog(this,
@@ -1173,7 +1179,7 @@ public class ControlFrame extends JFrame {
                 JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
                 JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED
         );
-        JTextField[] fields = new JTextField[Config.getSection("fields").length];
+        JTextField[] fields = new JTextField[Config.section("fields").size()];
         populateScoreControl(paneScoreInput, fields, true);
         
         btnCancel.addActionListener((ActionEvent e) -> {
@@ -1190,14 +1196,14 @@ public class ControlFrame extends JFrame {
                     Integer.parseInt(
                     ((String)cmbTeams.getSelectedItem()).split(":")[0])
             );
-            Data.lock().writeLock().lock();
+            Data.lock().lockWrite();
             try {
                 t.addScore(s);
             } finally {
-                Data.lock().writeLock().unlock();
+                Data.lock().unlockWrite();
             }
-            Object[] params = { t.getNumber(), t.getScores().size()-1 };
-            ControlCenter.triggerEvent(UserEvent.DATA_ADDED, params);
+            ControlCenter.triggerEvent(Event.record(UserEvent.DATA_ADDED,
+                    t.getNumber(), t.getScores().size()-1));
             updateDataView();
             d.dispose();
         });
@@ -1278,17 +1284,22 @@ public class ControlFrame extends JFrame {
         int fieldID = Score.getFieldID(key);
         if(fieldID >= 0) {
             txtScoreFields[fieldID].setText(String.valueOf(value));
-            ControlCenter.triggerScoreChangeEvent(key, fieldID, String.valueOf(value));
+            ControlCenter.triggerEvent(Event.scoreChanged(key, fieldID,
+                    String.valueOf(value)));
         }
     }
     
     private void updateDataView() {
-        tblData.setModel(Data.getTableModel(competition));
+        StandingsSnapshot standings = competition.getStandings();
+        if(standings.getVersion() == dataViewVersion) {
+            return;
+        }
+        tblData.setModel(Data.getTableModel(standings));
         tblData.validate();
-        tblClassification.setModel(Data.getResultsTableModel(competition));
+        tblClassification.setModel(Data.getResultsTableModel(standings));
         tblClassification.validate();
-        competition.sort();
-        display.setClassificationData(competition.getSortedClassifiedTeams());          
+        display.setClassificationData(standings);
+        dataViewVersion = standings.getVersion();
     }
     
     public void refreshDataView() {
@@ -1299,11 +1310,11 @@ public class ControlFrame extends JFrame {
     
     private void outputDisplayToScreen() {                
         if(cmbDisplayScreen.getSelectedIndex() <= 0) {
-            ControlCenter.triggerEvent(UserEvent.DISPLAY_HIDE, null);
+            ControlCenter.triggerEvent(Event.of(UserEvent.DISPLAY_HIDE));
             display.setVisible(false);
             return;
         }
-        ControlCenter.triggerEvent(UserEvent.DISPLAY_SHOW, null);
+        ControlCenter.triggerEvent(Event.of(UserEvent.DISPLAY_SHOW));
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
         GraphicsDevice gd = ge.getScreenDevices()[cmbDisplayScreen.getSelectedIndex()-1];
         display.setVisible(false);       
@@ -1339,13 +1350,26 @@ public class ControlFrame extends JFrame {
     private void loadData() {
         JFileChooser fc = new JFileChooser();
         fc.setCurrentDirectory(new java.io.File("."));
-        fc.setDialogTitle("Load CSV Data");
+        fc.setDialogTitle("Load Data");
+        fc.addChoosableFileFilter(
+                new FileNameExtensionFilter("Mercury Snapshot (." +
+                        Snapshot.EXTENSION + ")", Snapshot.EXTENSION)
+        );
         fc.setFileFilter(
                 new FileNameExtensionFilter("Saved Mercury Data (.csv)", "csv")
         );
         fc.setCurrentDirectory(Data.getDataWorkDir());
         if(fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            Data.loadCSV(competition, fc.getSelectedFile().getAbsolutePath());
+            File f = fc.getSelectedFile();
+            if(Snapshot.isSnapshot(f)) {
+                try {
+                    Snapshot.load(competition, f);
+                } catch(IOException e) {
+                    Log.err("Failed to load snapshot " + f + ": " + e.getMessage());
+                }
+            } else {
+                Data.loadCSV(competition, f.getAbsolutePath());
+            }
         }
         updateDataView();
     }
@@ -1355,7 +1379,7 @@ public class ControlFrame extends JFrame {
         if(col-3 < 0 || col-3 >= Score.getFields().size()) {
             return;
         }
-        Data.lock().writeLock().lock();
+        Data.lock().lockWrite();
         try {
             DefaultTableModel m = (DefaultTableModel) tblData.getModel();
             int row = tblData.getSelectedRow();
@@ -1364,7 +1388,7 @@ public class ControlFrame extends JFrame {
             int teamID = Integer.parseInt((String)m.getValueAt(row, 0));
             int scoreID = Integer.parseInt((String)m.getValueAt(row, 2));
             Team t = competition.getTeamByID(teamID);
-            String field = Config.getKeysInOriginalOrder("fields").get(column-3);
+            String field = Score.getFieldKey(column-3);
 
             NumberInputDialog dialog = new NumberInputDialog("Edit " + field +
                     " for " + t.getName(), 
@@ -1375,15 +1399,16 @@ public class ControlFrame extends JFrame {
 
             if(dialog.isApproved()) {
                 Score s = t.getScores().get(scoreID);
-                s.setValue(field, dialog.getValueDouble());
+                s.setValue(column-3, dialog.getValueDouble());
+                t.scoreChanged(s);
                 m.setValueAt(dialog.getValueDouble() + "", row, column);
                 m.setValueAt(s.getScore() + "", row, 3+Score.getFields().size());
-                Object[] params = {teamID, scoreID, field, dialog.getValueDouble()};
-                ControlCenter.triggerEvent(UserEvent.DATA_CHANGED, params);
+                ControlCenter.triggerEvent(Event.dataChanged(teamID, scoreID,
+                        field, dialog.getValueDouble()));
                 updateDataView();
             }
         } finally {
-            Data.lock().writeLock().unlock();
+            Data.lock().unlockWrite();
         }
     }
     
@@ -1433,7 +1458,8 @@ public class ControlFrame extends JFrame {
             if(competition.getSession() != null) {
                 competition.getSession().modifyCurrentScore(key, curVal);
             }
-            ControlCenter.triggerScoreChangeEvent(key, id, String.valueOf(curVal));
+            ControlCenter.triggerEvent(Event.scoreChanged(key, id,
+                    String.valueOf(curVal)));
         }
     }
     
@@ -1487,7 +1513,8 @@ public class ControlFrame extends JFrame {
             if(competition.getSession() != null) {
                 competition.getSession().modifyCurrentScore(key, value);
             }
-            ControlCenter.triggerScoreChangeEvent(key, id, String.valueOf(value));
+            ControlCenter.triggerEvent(Event.scoreChanged(key, id,
+                    String.valueOf(value)));
         }
     }
 }
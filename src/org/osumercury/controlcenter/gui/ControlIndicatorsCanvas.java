@@ -23,6 +23,7 @@ import javax.swing.*;
 import java.util.Calendar;
 import org.osumercury.controlcenter.CompetitionState;
 import org.osumercury.controlcenter.ControlCenter;
+import org.osumercury.controlcenter.EventBus;
 import org.osumercury.controlcenter.Score;
 import org.osumercury.controlcenter.SessionState;
 
@@ -53,14 +54,19 @@ public class ControlIndicatorsCanvas extends JPanel {
     public static final int DASH = 12;
     
     public long renderTime = 0;
+    private final BackBuffer buffer = new BackBuffer(this);
     
     public ControlIndicatorsCanvas(CompetitionState c, ControlFrame f) {
         this.c = c;
         this.f = f;
         scores = new ArrayList<>();
         
-        ControlCenter.addUserEventHook((int ID, Object params) -> {
-            switch(ID) {
+        // handlers only touch the session, never the data lock
+        ControlCenter.getEventBus().subscribe("ControlIndicatorsCanvas", (e) -> {
+            if(!e.isOnDefaultTrack()) {
+                return;
+            }
+            switch(e.getID()) {
                 case UserEvent.STATE_CHANGE_RUN:
                     scores = new ArrayList<>();
                     currentScore = new Score();
@@ -78,15 +84,16 @@ public class ControlIndicatorsCanvas extends JPanel {
                 case UserEvent.SESSION_ATTEMPT_DISCARDED:
                     currentScore = new Score();
                     currentTotalScore = currentScore.getScore();
+                    break;
+                case UserEvent.SCORE_CHANGED:
+                    if(currentScore != null) {
+                        currentScore.setValue(e.getIndex(),
+                                Double.parseDouble(e.getText()));
+                        currentTotalScore = currentScore.getScore();
+                    }
+                    break;
             }
-        });
-        
-        ControlCenter.addScoreChangedHook((key, scoredID, value) -> {
-            if(currentScore != null) {
-                currentScore.setValue(key, Double.parseDouble(value));
-                currentTotalScore = currentScore.getScore();
-            }
-        });
+        }, EventBus.BLOCK);
     }
     
     public void set(SessionState session) {
@@ -123,9 +130,17 @@ public class ControlIndicatorsCanvas extends JPanel {
             H = getHeight();
             rescaleDigits();
         }
-        BufferedImage displayImage = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = displayImage.createGraphics();
-        
+        // render again if the video memory was lost in the meantime
+        do {
+            Graphics2D g = buffer.begin(W, H);
+            render(g);
+            g.dispose();
+        } while(buffer.contentsLost());
+        buffer.show(_g);
+        renderTime = System.nanoTime() - startTime;
+    }
+    
+    private void render(Graphics2D g) {
         yOffset = 0;
         
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
@@ -256,9 +271,6 @@ public class ControlIndicatorsCanvas extends JPanel {
                 drawStatusFlags(g, false, false, false, false);
                 break;
         }
-        _g.drawImage(displayImage, 0, 0, null);
-        g.dispose();
-        renderTime = System.nanoTime() - startTime;
     }
     
     private void drawDashes(Graphics2D g) {
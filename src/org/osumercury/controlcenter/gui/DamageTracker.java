@@ -0,0 +1,118 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the regions of a canvas that changed since the previous frame.
+ * Every dynamic element of a frame is marked with an ID, its bounds and
+ * a signature of what it shows (e.g. the digits and color of a clock).
+ * An element is damaged if it is new, gone, moved or its signature
+ * changed, in which case both its old and new bounds need repainting.
+ *
+ * @author wira
+ */
+class DamageTracker {
+    /**
+     * If more than this fraction of the canvas is damaged, the whole
+     * canvas is repainted instead
+     */
+    private static final double FULL_RATIO = 0.6;
+
+    private static final class Element {
+        final Rectangle bounds;
+        final Object[] signature;
+
+        Element(Rectangle bounds, Object[] signature) {
+            this.bounds = bounds;
+            this.signature = signature;
+        }
+    }
+
+    private Map<Object, Element> previous = new HashMap<>();
+    private Map<Object, Element> current = new HashMap<>();
+
+    void mark(Object id, int x, int y, int w, int h, Object... signature) {
+        current.put(id, new Element(new Rectangle(x, y, w, h), signature));
+    }
+
+    /**
+     * Compare the elements marked since the last call with the previous
+     * frame's
+     *
+     * @param full true if the whole canvas has to be repainted regardless
+     * @return damaged regions clipped to the canvas, empty if nothing
+     *         changed
+     */
+    List<Rectangle> finish(boolean full, int w, int h) {
+        Rectangle canvas = new Rectangle(0, 0, w, h);
+        List<Rectangle> damage = new ArrayList<>();
+        long area = 0;
+        if(!full) {
+            for(Map.Entry<Object, Element> e : current.entrySet()) {
+                Element now = e.getValue();
+                Element before = previous.remove(e.getKey());
+                if(before != null && before.bounds.equals(now.bounds) &&
+                   Arrays.equals(before.signature, now.signature)) {
+                    continue;
+                }
+                area += add(damage, now.bounds, canvas);
+                if(before != null && !before.bounds.equals(now.bounds)) {
+                    area += add(damage, before.bounds, canvas);
+                }
+            }
+            for(Element gone : previous.values()) {
+                area += add(damage, gone.bounds, canvas);
+            }
+        }
+        previous.clear();
+        Map<Object, Element> swap = previous;
+        previous = current;
+        current = swap;
+        if(full || area > FULL_RATIO * w * h) {
+            damage.clear();
+            damage.add(canvas);
+        }
+        return damage;
+    }
+
+    private static long add(List<Rectangle> damage, Rectangle r, Rectangle canvas) {
+        Rectangle clipped = r.intersection(canvas);
+        if(clipped.isEmpty()) {
+            return 0;
+        }
+        damage.add(clipped);
+        return (long) clipped.width * clipped.height;
+    }
+
+    /**
+     * @return number of pixels covered by the regions, overlaps are counted
+     *         once per region
+     */
+    static long area(List<Rectangle> damage) {
+        long area = 0;
+        for(Rectangle r : damage) {
+            area += (long) r.width * r.height;
+        }
+        return area;
+    }
+}
@@ -19,6 +19,7 @@ import org.osumercury.controlcenter.UserEvent;
 import java.awt.*;
 import javax.swing.*;
 import java.awt.image.*;
+import java.awt.geom.Area;
 import java.util.List;
 import java.util.Calendar;
 import java.util.ArrayList;
@@ -27,9 +28,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.osumercury.controlcenter.CompetitionState;
 import org.osumercury.controlcenter.Config;
 import org.osumercury.controlcenter.ControlCenter;
+import org.osumercury.controlcenter.Data;
+import org.osumercury.controlcenter.EventBus;
 import org.osumercury.controlcenter.Log;
 import org.osumercury.controlcenter.Score;
 import org.osumercury.controlcenter.SessionState;
+import org.osumercury.controlcenter.StandingsSnapshot;
 import org.osumercury.controlcenter.Team;
 
 /**
@@ -51,7 +55,12 @@ public class DisplayFrame extends JFrame {
     private int smallH;
     private int charW;
     private int charH;
-    private BufferedImage displayImage;
+    private BackBuffer displayBuffer;
+    private final BufferedImage[] layers = new BufferedImage[3];
+    private int layerVersion = 0;
+    private final int[] layerVersions = new int[3];
+    private boolean layerShowBanner;
+    private AllocationMeter allocationMeter;
     private BufferedImage thumbnailImage;
     private BufferedImage scaledLogo;
     private BufferedImage scaledBannerImage;
@@ -69,11 +78,14 @@ public class DisplayFrame extends JFrame {
     private int nextTeamID = -1;
     private int thumbIntervalCount = 0;
     private List<String[]> classificationRows;
+    private int classificationVersion = -1;
     private double[] scores;
     private int[] scoreDigits;
     private int[] scoreDecimal;
     private Score currentScore;
     private Font systemFont;
+    private FontMetrics systemFontMetrics;
+    private final TextCache textCache = new TextCache(TEXT_CACHE_PIXELS);
     private String systemFontName;                
     private HashMap<String, String> text;
     private ArrayList<DisplayOverlay> overlays;
@@ -92,7 +104,7 @@ public class DisplayFrame extends JFrame {
     private long beginTime = -1;
     private long renderTime = 0;
     private long renderedFrames = 0;
-    private boolean drawing = false;
+    private volatile boolean drawing = false;
     
     public static final int OUTPUT_LOGO = 0;
     public static final int OUTPUT_RUN_STATUS = 1;
@@ -102,6 +114,14 @@ public class DisplayFrame extends JFrame {
     public static final int PERIOD = 11;
     public static final int DASH = 12;
     
+    // total size of the cached text strips, 32 MB
+    private static final long TEXT_CACHE_PIXELS = 8L * 1024 * 1024;
+    
+    // static layers, pre-composited once per size and theme
+    private static final int LAYER_BACKGROUND = 0;
+    private static final int LAYER_LOGO = 1;
+    private static final int LAYER_CLASSIFICATION = 2;
+    
     // static options (common for all displays) and default values
     public static String BANNER_FILE;
     
@@ -176,15 +196,18 @@ public class DisplayFrame extends JFrame {
     
     public void init() {
         Log.d(0, "DisplayFrame: init");
+        if(cc.isWarmAssets()) {
+            Assets.warmUp(getRequiredAssets(competition));
+        }
         recolor();
         canvas = new DisplayCanvas();
         add(canvas);
         overlays = new ArrayList<>();
         overlayMap = new HashMap<>();
         classificationRows = new ArrayList();
-        scores = new double[Score.getFields().size()];
-        scoreDigits = new int[Score.getFields().size()];
-        scoreDecimal = new int[Score.getFields().size()];
+        scores = new double[Score.getFieldCount()];
+        scoreDigits = new int[Score.getFieldCount()];
+        scoreDecimal = new int[Score.getFieldCount()];
         teamBadges = new HashMap();
         systemFont = new Font(Font.MONOSPACED, Font.BOLD, 12);
         text = new HashMap();
@@ -206,29 +229,32 @@ public class DisplayFrame extends JFrame {
         text.put("ID", "ID");
         text.put("SCORE", "SCORE");
         
-        ArrayList<String> keys = Config.getKeysInOriginalOrder("localization");
-        if(keys != null) {
-            for(String key : keys) {
-                localizeText(key, Config.getValue("localization", key));
+        Config.Section localization = Config.section("localization");
+        if(localization != null) {
+            for(String key : localization.getKeyArray()) {
+                localizeText(key, localization.get(key));
             }
         }
         
         newScore();
-        ControlCenter.addScoreChangedHook(
-                (String key, int scoreID, String scoreValue) -> {
-                    scores[scoreID] = Double.parseDouble(scoreValue);
-                    currentScore.setValue(key, scores[scoreID]);
-                    currentScoreVal = currentScore.getScore();
-                }
-        );
-
-        ControlCenter.addUserEventHook((int ID, Object param) -> {
+        ControlCenter.getEventBus().subscribe("DisplayFrame", (e) -> {
+            if(!e.isOnDefaultTrack()) {
+                return;
+            }
+            if(e.getID() == UserEvent.SCORE_CHANGED) {
+                int scoreID = e.getIndex();
+                scores[scoreID] = Double.parseDouble(e.getText());
+                currentScore.setValue(scoreID, scores[scoreID]);
+                currentScoreVal = currentScore.getScore();
+                invalidate();
+                return;
+            }
             CompetitionState c = cc.getCompetitionState();
             if(c.getState() == CompetitionState.IDLE ||
                c.getState() == CompetitionState.SETUP) {
                 return;
             }
-            switch(ID) {
+            switch(e.getID()) {
                 case UserEvent.STATE_CHANGE_RUN:
                 case UserEvent.SESSION_ATTEMPT_COMMITTED:
                 case UserEvent.DATA_ADDED:
@@ -236,15 +262,17 @@ public class DisplayFrame extends JFrame {
                 case UserEvent.DATA_CLEARED:
                 case UserEvent.DATA_IMPORTED:
                 case UserEvent.DATA_RECORD_EXPUNGED:
-                    SessionState s = c.getSession();
-                    Team t = s.getActiveTeam();
-                    if(!t.hasScore() || t.getBestScore() == null) {
-                        return;
+                    Team t = c.getSession().getActiveTeam();
+                    Double best = Data.lock().read(() ->
+                            t.getBestScore() == null ? null :
+                                t.getBestScore().getScore());
+                    if(best != null) {
+                        bestScoreVal = best;
+                        invalidate();
                     }
-                    bestScoreVal = s.getActiveTeam().getBestScore().getScore();
                     break;
             }
-        });
+        }, EventBus.COALESCE);
         String val;
         if((val = Config.getValue("display", "score_field_digits")) != null) {
             try {
@@ -266,9 +294,9 @@ public class DisplayFrame extends JFrame {
         }
         
         // parse score field display format, if defined under [display]
-        int i = 0;
         String[] tokens;
-        for(String key : Config.getKeysInOriginalOrder("fields")) {
+        for(int i = 0; i < Score.getFieldCount(); i++) {
+            String key = Score.getFieldKey(i);
             String entry = Config.getValue("display", key);
             try {
                 if(entry != null) {
@@ -285,7 +313,6 @@ public class DisplayFrame extends JFrame {
                 scoreDigits[i] = SCORE_FIELD_DIGITS;
                 scoreDecimal[i] = SCORE_FIELD_DECIMAL;
             }
-            i++;
         }        
     }
     
@@ -302,6 +329,7 @@ public class DisplayFrame extends JFrame {
         } finally {
             overlayLock.writeLock().unlock();
         }
+        invalidate();
     }
     
     public void removeOverlay(String name) {
@@ -318,6 +346,7 @@ public class DisplayFrame extends JFrame {
         } finally {
             overlayLock.writeLock().unlock();
         }
+        invalidate();
     }
     
     public void setOverlayVisibility(String name, boolean visible) {
@@ -330,6 +359,7 @@ public class DisplayFrame extends JFrame {
         } finally {
             overlayLock.writeLock().unlock();
         }
+        invalidate();
     }
     
     public DisplayOverlay getOverlayHandle(String name) {
@@ -342,33 +372,38 @@ public class DisplayFrame extends JFrame {
                     " string token");
         } else {
             text.put(key, localizedText);
+            invalidateLayers();
         }
     }
     
-    public void setClassificationData(List<Team> classification) {
+    public void setClassificationData(StandingsSnapshot standings) {
+        if(standings.getVersion() == classificationVersion) {
+            return;
+        }
+        List<StandingsSnapshot.Entry> classification = standings.getClassifiedTeams();
         Log.d(3, "DisplayFrame.setClassificationData: new classification of " +
                 "size " + classification.size());
         List<String[]> latchedList = new ArrayList<>();
         int rank = 1;
-        for(Team t : classification) {
+        for(StandingsSnapshot.Entry t : classification) {
             String[] row = { ""+rank, t.getName(), ""+t.getNumber(),
-                String.format("%.2f",t.getBestScore().getScore()) +
-                (competition.isTeamEligibleForChampionship(t) ? "" : " !")};
+                String.format("%.2f", t.getBestScore()) +
+                (t.isChampionEligible() ? "" : " !")};
             latchedList.add(row);
             rank++;
         }
         classificationRows = latchedList;
+        classificationVersion = standings.getVersion();
+        invalidate();
     }
     
     public void newScore() {
         currentScore = new Score();
-        int i = 0;
-        for(String key : Config.getKeysInOriginalOrder("fields")) {
-            scores[i] = Score.getDefaultValue(key);
-            currentScore.setValue(key, Score.getDefaultValue(key));
-            i++;
+        for(int i = 0; i < scores.length; i++) {
+            scores[i] = currentScore.getValue(i);
         }
         currentScoreVal = currentScore.getScore();
+        invalidate();
     }
     
     public void setScore(String key, int id, double value) {
@@ -376,18 +411,21 @@ public class DisplayFrame extends JFrame {
             return;
         
         scores[id] = value;
-        currentScore.setValue(key, value);
+        currentScore.setValue(id, value);
         currentScoreVal = currentScore.getScore();
+        invalidate();
     }
     
     public void setBestScore(Score score) {
         if(score != null) {
             bestScoreVal = score.getScore();
         }
+        invalidate();
     }
     
     public void setNextTeamID(int id) {
         nextTeamID = id;
+        invalidate();
     }
     
     public synchronized BufferedImage getThumbnail() {
@@ -398,11 +436,22 @@ public class DisplayFrame extends JFrame {
         return canvas;
     }
     
+    /**
+     * Scale the current contents of the back buffer into a new thumbnail
+     * image, the previous thumbnail may still be drawn by the preview
+     */
     public synchronized void generateThumbnail() {
-        int width = THUMB_WIDTH;
-        int height = (int)((float)displayImage.getHeight()/displayImage.getWidth()
-                * THUMB_WIDTH);
-        thumbnailImage = Assets.fastScale(displayImage, width, height);
+        int width = Math.max(1, THUMB_WIDTH);
+        int height = Math.max(1, (int)((float)displayBuffer.getHeight() /
+                displayBuffer.getWidth() * THUMB_WIDTH));
+        BufferedImage thumb = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumb.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                           RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(displayBuffer.getImage(), 0, 0, width, height, null);
+        g.dispose();
+        thumbnailImage = thumb;
     }    
     
     public synchronized void setThumbnailWidth(int w) {
@@ -414,6 +463,7 @@ public class DisplayFrame extends JFrame {
             return;
         }
         Log.d(0, "DisplayFrame.rescale: rescaling to " + width + "x" + height);        
+        invalidateLayers();
         Graphics2D g = (Graphics2D) canvas.getGraphics();
         String str = "RESCALING DISPLAY UI";
         int strWidth = getTextWidth(str);
@@ -448,7 +498,8 @@ public class DisplayFrame extends JFrame {
                 fontSize++;
                 systemFont = new Font(systemFontName, Font.BOLD, fontSize);
             } while(g.getFontMetrics(systemFont).getHeight() < charH);
-            charW = g.getFontMetrics(systemFont).stringWidth("A");
+            systemFontMetrics = g.getFontMetrics(systemFont);
+            charW = systemFontMetrics.stringWidth("A");
             Log.d(3, "DisplayFrame.rescale: font size="+fontSize);
         } else {
             scaledAlphabet = Assets.scaleFontH(0, charH);
@@ -457,6 +508,8 @@ public class DisplayFrame extends JFrame {
             scaledWhiteNonAlphabet = Assets.scaleFontH(3, charH);
             charW = scaledAlphabet[0].getWidth();
         }
+        Log.d(2, "DisplayFrame.rescale: text cache " + textCache.getStats());
+        textCache.clear();
         
         // background image scaling
         if(BG_IMAGE != null && Assets.doesAssetExist(BG_IMAGE)) {
@@ -541,15 +594,38 @@ public class DisplayFrame extends JFrame {
     
     public void rescale() {
         scheduleRescale = true;
+        invalidate();
+    }
+    
+    /**
+     * @return names of the image assets used by rescale
+     */
+    public static List<String> getRequiredAssets(CompetitionState c) {
+        List<String> names = new ArrayList<>();
+        names.add("logo.png");
+        if(BG_IMAGE != null) {
+            names.add(BG_IMAGE);
+        }
+        if(BANNER_FILE != null) {
+            names.add(BANNER_FILE);
+        }
+        for(Team t : c.getTeams()) {
+            if(t.getLogoFileName() != null) {
+                names.add(t.getLogoFileName());
+            }
+        }
+        return names;
     }
     
     public void setFont(String fontName) {
         systemFontName = fontName;
         scheduleRescale = true;
+        invalidate();
     }
     
     public void setMode(int mode) {
         this.mode = mode;
+        invalidate();
     } 
     
     public void recolor() {
@@ -558,6 +634,28 @@ public class DisplayFrame extends JFrame {
         ALT_COLOR = new Color(ALT_RED, ALT_GREEN, ALT_BLUE);
         BG_COLOR = new Color(BG_RED, BG_GREEN, BG_BLUE);
         TABLE_BG_COLOR = new Color(TABLE_BG_RED, TABLE_BG_GREEN, TABLE_BG_BLUE);
+        invalidateLayers();
+        textCache.clear();
+    }
+    
+    /**
+     * Compose the static layers again on the next frame, call whenever
+     * something they show changes (size, colors, text)
+     */
+    private synchronized void invalidateLayers() {
+        layerVersion++;
+        invalidate();
+    }
+    
+    /**
+     * Ask the frame scheduler for a frame, call after changing anything
+     * the display shows outside of the event bus
+     */
+    public void invalidate() {
+        FrameScheduler scheduler = cc.getFrameScheduler();
+        if(scheduler != null) {
+            scheduler.invalidate();
+        }
     }
     
     public int getMode() {
@@ -566,6 +664,7 @@ public class DisplayFrame extends JFrame {
     
     public void setRankStart(int rank) {
         rankStart = rank;
+        invalidate();
     }    
     
     public int getRankStart() {
@@ -576,8 +675,23 @@ public class DisplayFrame extends JFrame {
         canvas.repaint();
     }
     
+    /**
+     * Render what changed since the last frame and show only those
+     * regions. Skipped if the previous frame is still being drawn.
+     */
+    public void repaintChanged() {
+        if(drawing) {
+            return;
+        }
+        drawing = true;
+        SwingUtilities.invokeLater(canvas::update);
+    }
+    
     private int getTextWidth(String str) {
         if(systemFontName != null) {
+            if(systemFontMetrics != null && systemFontMetrics.getFont() == systemFont) {
+                return systemFontMetrics.stringWidth(str);
+            }
             return canvas.getGraphics().getFontMetrics(systemFont).stringWidth(str);
         }
         
@@ -592,16 +706,68 @@ public class DisplayFrame extends JFrame {
         return width;
     }
         
+    /**
+     * Draw a string with the system font or the glyph assets, from a cached
+     * strip if it was drawn before at the current size
+     */
     private void drawText(Graphics2D g, String str, int x, int y, boolean white) {
         if(systemFontName != null) {
-            FontMetrics m = g.getFontMetrics(systemFont);
-            int baseY = y + m.getHeight() - m.getDescent();
-            g.setColor(white ? Color.WHITE : PRIMARY_COLOR);            
+            // callers may rely on these being set like drawString did
+            g.setColor(white ? Color.WHITE : PRIMARY_COLOR);
             g.setFont(systemFont);
-            g.drawString(str, x, baseY);            
+        }
+        if(str.isEmpty()) {
             return;
         }
+        TextCache.Strip strip = textCache.get(str, white);
+        if(strip == null) {
+            strip = renderText(g, str, white);
+            if(strip == null) {
+                return;
+            }
+            textCache.put(str, white, strip);
+        }
+        g.drawImage(strip.image, x+strip.dx, y+strip.dy, this);
+    }
+    
+    /**
+     * @return the string rendered into a transparent strip, or null if it
+     *         has no visible size
+     */
+    private TextCache.Strip renderText(Graphics2D g, String str, boolean white) {
+        BufferedImage img;
+        Graphics2D sg;
+        if(systemFontName != null) {
+            FontMetrics m = g.getFontMetrics(systemFont);
+            // room for glyphs that overhang their advance
+            int pad = m.getHeight()/4;
+            int w = m.stringWidth(str) + 2*pad;
+            int h = m.getHeight();
+            if(w <= 0 || h <= 0) {
+                return null;
+            }
+            img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            sg = img.createGraphics();
+            sg.setRenderingHints(g.getRenderingHints());
+            sg.setColor(white ? Color.WHITE : PRIMARY_COLOR);
+            sg.setFont(systemFont);
+            sg.drawString(str, pad, h - m.getDescent());
+            sg.dispose();
+            return new TextCache.Strip(img, -pad, 0);
+        }
         
+        int w = getTextWidth(str);
+        if(w <= 0 || charH <= 0) {
+            return null;
+        }
+        img = new BufferedImage(w, charH, BufferedImage.TYPE_INT_ARGB_PRE);
+        sg = img.createGraphics();
+        drawGlyphs(sg, str, 0, 0, white);
+        sg.dispose();
+        return new TextCache.Strip(img, 0, 0);
+    }
+    
+    private void drawGlyphs(Graphics2D g, String str, int x, int y, boolean white) {
         for(char c : str.toUpperCase().toCharArray()) {
             switch (c) {
                 case '-':
@@ -670,6 +836,11 @@ public class DisplayFrame extends JFrame {
     }
     
     class DisplayCanvas extends JPanel {
+        private final DamageTracker damageTracker = new DamageTracker();
+        private BufferedImage layoutImage;
+        private boolean tracking = false;
+        private long pixelsTouched = 0;
+        private Rectangle statsBounds;
         
         public int W(double r) {
             return (int)(r*getWidth());
@@ -687,70 +858,168 @@ public class DisplayFrame extends JFrame {
             return (int)(H(0.5) - 0.5*height);
         }        
         
+        /**
+         * Render the next frame and copy only the regions that changed to
+         * the screen, must be called on the event dispatch thread
+         */
+        void update() {
+            try {
+                List<Rectangle> damage = renderFrame(false);
+                if(DRAW_RENDER_TIME && statsBounds != null && !damage.isEmpty()) {
+                    damage.add(statsBounds);
+                }
+                for(Rectangle r : damage) {
+                    paintImmediately(r);
+                }
+            } finally {
+                drawing = false;
+            }
+        }
+        
         @Override
         public void paint(Graphics _g) {
-            drawing = true;
-                        
+            // exposed or resized, the retained frame is shown again if it
+            // is still intact
+            if(displayBuffer == null || scheduleRescale ||
+               !displayBuffer.isCurrent(getWidth(), getHeight())) {
+                renderFrame(true);
+            }
+            displayBuffer.show(_g);
+            if(DRAW_RENDER_TIME) {
+                drawRenderTime(_g);
+            }
+        }
+        
+        /**
+         * Render the regions of the frame that changed into the back buffer
+         *
+         * @param full render the whole frame
+         * @return the regions that were rendered
+         */
+        private List<Rectangle> renderFrame(boolean full) {
             if(beginTime < 0) {
                 beginTime = System.nanoTime();
             }
             long startTime = System.nanoTime();
+            if(DRAW_RENDER_TIME) {
+                if(allocationMeter == null) {
+                    allocationMeter = new AllocationMeter();
+                }
+                allocationMeter.beginFrame();
+            }
             
             if(W != getWidth() || H != getHeight() || scheduleRescale) {
                 scheduleRescale = false;
                 W = getWidth();
                 H = getHeight();
                 rescale(W, H);
+                full = true;
+            }
+            if(displayBuffer == null) {
+                displayBuffer = new BackBuffer(this);
             }
-            int x, y, i;
-            displayImage = new BufferedImage(
-                W, H, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = displayImage.createGraphics();
             
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                               RenderingHints.VALUE_ANTIALIAS_ON);
-            g.setColor(BG_COLOR);
-            g.fillRect(0, 0, W, H);
+            // layout pass: mark the dynamic elements without drawing anything
+            if(layoutImage == null) {
+                layoutImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D lg = layoutImage.createGraphics();
+            lg.setClip(0, 0, 0, 0);
+            tracking = true;
+            try {
+                render(lg);
+            } finally {
+                tracking = false;
+                lg.dispose();
+            }
+            List<Rectangle> damage = damageTracker.finish(full, W, H);
             
-            if(scaledBackgroundImage != null) {
-                switch(BG_ALIGNMENT) {
-                    case 0:
-                        g.drawImage(scaledBackgroundImage, 0, 0, null);
-                        break;
-                    case 1:
-                        g.drawImage(scaledBackgroundImage, 
-                                W(1)-scaledBackgroundImage.getWidth(), 0, null);
-                        break;
-                    case 2:
-                        g.drawImage(scaledBackgroundImage, 
-                                W(1)-scaledBackgroundImage.getWidth(), 
-                                H(1)-scaledBackgroundImage.getHeight(), null);
-                        break;
-                    case 3:
-                        g.drawImage(scaledBackgroundImage, 0, 
-                                H(1)-scaledBackgroundImage.getHeight(), null);
-                        break;
-                    case 4:
-                        g.drawImage(scaledBackgroundImage, 
-                                centeredX(scaledBackgroundImage.getWidth()), 
-                                0, null);
-                        break;
-                    case 5:
-                        g.drawImage(scaledBackgroundImage, 
-                                centeredX(scaledBackgroundImage.getWidth()),
-                                H(1)-scaledBackgroundImage.getHeight(), null);
-                        break;
-                    case 6:
-                        g.drawImage(scaledBackgroundImage, 
-                                centeredX(scaledBackgroundImage.getWidth()),
-                                centeredY(scaledBackgroundImage.getHeight()), null);
-                        break;
+            // render again if the video memory was lost in the meantime
+            while(!damage.isEmpty()) {
+                Graphics2D g = displayBuffer.begin(W, H);
+                if(displayBuffer.wasReset() && !isWhole(damage)) {
+                    damage.clear();
+                    damage.add(new Rectangle(0, 0, W, H));
+                }
+                if(!isWhole(damage)) {
+                    Area clip = new Area();
+                    for(Rectangle r : damage) {
+                        clip.add(new Area(r));
+                    }
+                    g.clip(clip);
+                }
+                render(g);
+                g.dispose();
+                if(!displayBuffer.contentsLost()) {
+                    break;
+                }
+                damage.clear();
+                damage.add(new Rectangle(0, 0, W, H));
+            }
+            
+            if(!damage.isEmpty()) {
+                renderedFrames++;
+            }
+            pixelsTouched = DamageTracker.area(damage);
+            if(GENERATE_THUMBNAIL && displayBuffer.getImage() != null) {
+                if(thumbIntervalCount >= THUMB_INTERVAL && !damage.isEmpty() ||
+                   thumbnailImage == null || thumbnailImage.getWidth() != THUMB_WIDTH) {
+                    thumbIntervalCount = 0;
+                    generateThumbnail();
+                    if(cc.getThumbnailFrame() != null) {
+                        cc.getThumbnailFrame().repaint();
+                    }
                 }
+                thumbIntervalCount++;
+            }
+            renderTime = System.nanoTime()-startTime;
+            if(DRAW_RENDER_TIME && allocationMeter != null) {
+                allocationMeter.endFrame();
+            }
+            return damage;
+        }
+        
+        private boolean isWhole(List<Rectangle> damage) {
+            return damage.size() == 1 && damage.get(0).width == W &&
+                   damage.get(0).height == H;
+        }
+        
+        /**
+         * Mark a dynamic element of the frame during the layout pass
+         *
+         * @param id unique name of the element
+         * @param signature everything that decides what the element looks
+         *        like
+         */
+        private void mark(Object id, int x, int y, int w, int h, Object... signature) {
+            if(tracking) {
+                damageTracker.mark(id, x, y, w, h, signature);
+            }
+        }
+        
+        private void render(Graphics2D g) {
+            int x, y, i;
+            int mode = DisplayFrame.this.mode;
+            int state = competition.getState();
+            SessionState s = competition.getSession();
+            boolean active = s != null && (state == CompetitionState.SETUP ||
+                    state == CompetitionState.RUN ||
+                    state == CompetitionState.POST_RUN);
+            
+            // everything that only changes with the size or the theme comes
+            // from a cached layer, only the dynamic elements are drawn here
+            if(mode == OUTPUT_LOGO || (mode == OUTPUT_RUN_STATUS && !active)) {
+                drawLayer(g, LAYER_LOGO);
+            } else if(mode == OUTPUT_CLASSIFICATION) {
+                drawLayer(g, LAYER_CLASSIFICATION);
+            } else {
+                drawLayer(g, LAYER_BACKGROUND);
             }
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
             
             String str, str2;
             g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 64));
-            SessionState s = competition.getSession();
             
             int teamID = -1;
             String teamName = "";
@@ -758,11 +1027,15 @@ public class DisplayFrame extends JFrame {
                 teamID = s.getActiveTeam().getNumber();
                 teamName = s.getActiveTeam().getName();
             }
+            // changes that affect most of the frame repaint all of it
+            mark("frame", 0, 0, W, H, mode, state, layerVersion, teamID,
+                 teamName, s == null ? -1 : s.getRunNumber(), bestScoreVal,
+                 active && teamID >= 0 && s.getActiveTeam().hasScore());
             int yOffset = 0;
             OUTER:
             switch (mode) {
                 case OUTPUT_RUN_STATUS:
-                    if (s != null && competition.getState() != CompetitionState.IDLE) {
+                    if(active) {
                         if(s.isPaused() && System.currentTimeMillis()/500%2 == 1) {
                             g.setColor(new Color(0xff, 0xff, 0x00));
                         } else if(competition.redFlagged() && System.currentTimeMillis()/500%2 == 1) {
@@ -772,15 +1045,18 @@ public class DisplayFrame extends JFrame {
                         }
                         g.fillRect(0, 0, W, H(PAUSE_BAR_H));
                         g.fillRect(0, H(1-PAUSE_BAR_H), W, H(PAUSE_BAR_H));
+                        mark("pause-top", 0, 0, W, H(PAUSE_BAR_H), g.getColor());
+                        mark("pause-bottom", 0, H(1-PAUSE_BAR_H), W, H(PAUSE_BAR_H),
+                             g.getColor());
                         yOffset += H(PAUSE_BAR_H)+timeBarHPx+spacingSPx;
                         str = text.get("TEAM") + " #" + teamID;
                         str2 = " " + teamName;
                         drawText(g, str, spacingSPx, yOffset, true);
                         drawText(g, str2, spacingSPx+getTextWidth(str), yOffset, false);
                         yOffset += charH;
-                        if(competition.getState() != CompetitionState.POST_RUN) {
+                        if(state != CompetitionState.POST_RUN) {
                             double ratio = (double)s.getElapsedTimeMilliseconds()/
-                                    (competition.getState() == CompetitionState.SETUP ? 
+                                    (state == CompetitionState.SETUP ? 
                                     s.getSetupDuration() : s.getWindowDuration());
                             ratio = ratio < 0 ? 0 : ratio;
                             ratio = ratio > 1 ? 1 : ratio;
@@ -789,6 +1065,8 @@ public class DisplayFrame extends JFrame {
                                     PRIMARY_BLUE-(int)(ratio*(PRIMARY_BLUE-SECONDARY_BLUE))
                             ));
                             g.fillRect(0, H(PAUSE_BAR_H), (int)(ratio*W), timeBarHPx);
+                            mark("time-bar", 0, H(PAUSE_BAR_H), W, timeBarHPx,
+                                 (int)(ratio*W), g.getColor());
                             
                             drawClock(g,
                                     (int)((s.getSecondsLeft()+1)/60),
@@ -817,7 +1095,7 @@ public class DisplayFrame extends JFrame {
                         }
                         int scoreWidth;
                         scoreWidth = 6*smallW+scaledSmallDigits[PERIOD].getWidth();                          
-                        switch (competition.getState()) {
+                        switch (state) {
                             case CompetitionState.SETUP:
                                 str = text.get("SETUP_PERIOD");
                                 y = H(1-PAUSE_BAR_H)-spacingMPx-charH;
@@ -861,12 +1139,12 @@ public class DisplayFrame extends JFrame {
                                         ALIGN_CLOCK_LEFT ? clockMarginPx+spacingSPx+getTextWidth(str)
                                                  : W(1)-clockMarginPx-getTextWidth(str2),
                                         y, true);                              
-                                i = 0;
                                 int colW;
                                 int rowH = spacingXLPx+smallH+spacingSPx+charH;
                                 x = spacingSPx;
                                 yOffset += spacingMPx;
-                                for(String key : Config.getKeysInOriginalOrder("fields")) {
+                                for(i = 0; i < scores.length; i++) {
+                                    String key = Score.getFieldKey(i);
                                     int colW_a = spacingXLPx+scoreDigits[i]*smallW +
                                            (scoreDecimal[i] == 0 ? 0 : 
                                            scoreDecimal[i]*smallW+scaledSmallDigits[PERIOD].getWidth());
@@ -876,6 +1154,8 @@ public class DisplayFrame extends JFrame {
                                         x = spacingSPx;
                                         yOffset += rowH;
                                     }                                    
+                                    mark(i, x, yOffset, colW+spacingXSPx,
+                                         rowH+spacingXSPx, scores[i]);
                                     g.setColor(PRIMARY_COLOR);
                                     g.drawRect(x+spacingXSPx, yOffset+spacingXSPx,
                                                colW-spacingSPx, rowH-spacingSPx);
@@ -884,7 +1164,6 @@ public class DisplayFrame extends JFrame {
                                     drawScoreField(g, scores[i],
                                             scoreDigits[i], scoreDecimal[i],
                                             x+spacingLPx, yOffset+spacingLPx+charH+spacingSPx);
-                                    i++;
                                     x += colW;
                                 }
                                 str = text.get("CURRENT") + " ";
@@ -894,6 +1173,7 @@ public class DisplayFrame extends JFrame {
                                 drawText(g, str2, x, y, true);
                                 x -= getTextWidth(str);
                                 drawText(g, str, x, y, false);
+                                mark("current", x, y, W(1)-spacingSPx-x, charH, str2);
                             case CompetitionState.POST_RUN:
                                 Team t = competition.getSession().getActiveTeam();
                                 if(t.hasScore()) {
@@ -930,48 +1210,30 @@ public class DisplayFrame extends JFrame {
                             drawText(g, str, spacingSPx, H(1)-spacingMPx-2*charH, true);
                             str = t.getInstitution();
                             drawText(g, str, spacingSPx, H(1)-spacingMPx-1*charH, false);
+                            mark("next", 0, H(1)-spacingMPx-3*charH, W, 3*charH,
+                                 nextTeamID, t.getName(), str);
                         }
                     }
                 case OUTPUT_LOGO:
-                    g.setColor(SECONDARY_COLOR);
-                    g.drawImage(scaledLogo, //(int)(System.currentTimeMillis()/500%10)],
-                            centeredX(scaledLogo.getWidth()),
-                            H(LOGO_Y_POSITION_PROPORTION) - scaledLogo.getHeight()/2,
-                            this);
                     int hours = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
                     int minutes = Calendar.getInstance().get(Calendar.MINUTE);
                     y =  H(LOGO_Y_POSITION_PROPORTION) + scaledLogo.getHeight()/2 + spacingSPx;
-                    if((Calendar.getInstance().get(Calendar.SECOND) % 2) != 1) {
+                    boolean colon = (Calendar.getInstance().get(Calendar.SECOND) % 2) != 1;
+                    if(colon) {
                         g.drawImage(scaledBlueDigits[COLON],
                                 (int)(W(0.5)-scaledBlueDigits[COLON].getWidth()/2),
                                 y, this);
                     }
+                    mark("colon", W(0.5)-scaledBlueDigits[COLON].getWidth()/2, y,
+                         scaledBlueDigits[COLON].getWidth(), digitH, colon);
                     drawClock(g, hours, minutes, false, W(0.5), y);
-                    if(SHOW_BANNER && scaledBannerImage != null) {
-                        y = H(1)-scaledBannerImage.getHeight()-spacingSPx;
-                        g.drawImage(scaledBannerImage, W(1)-spacingSPx-scaledBannerImage.getWidth(), y, null);
-                    }
-                        
                     break;
                 case OUTPUT_CLASSIFICATION:
-                    y = 5;
-                    str = text.get("CLASSIFICATION");
-                    drawText(g, str, centeredX(getTextWidth(str)), y, false);
-                    y += charH + spacingXSPx;
-                    str = text.get("POSITION");
-                    drawText(g, str, spacingLPx, y, false);
-                    str = text.get("TEAM");
-                    drawText(g, str, W(0.1), y, false);
-                    str = text.get("ID");
-                    drawText(g, str, W(0.6), y, false);
-                    str = text.get("SCORE");
-                    drawText(g, str, W(0.8), y, false);
-                    y += charH + spacingXSPx;
-                    g.setColor(SECONDARY_COLOR);
-                    g.fillRect(0, y, W(1), horizBarHPx);
-                    y += horizBarHPx;
+                    y = 5 + 2*(charH + spacingXSPx) + horizBarHPx;
                     boolean background = true;
                     int latchRankStart = rankStart;
+                    mark("table", 0, y, W, 10*(5+charH+spacingXSPx)+spacingSPx,
+                         classificationVersion, latchRankStart);
                     for(i = 0; i < 10; i++) {
                         if(i+(latchRankStart-1) >= classificationRows.size()) {
                             break;
@@ -991,13 +1253,13 @@ public class DisplayFrame extends JFrame {
                         background = !background;
                     }
                     
-                    if(competition.getState() == CompetitionState.SETUP ||
-                            competition.getState() == CompetitionState.RUN) {
+                    if(state == CompetitionState.SETUP ||
+                            state == CompetitionState.RUN) {
                         g.setColor(BG_COLOR);
                         g.fillRect(0, H(1)-spacingXSPx-charH-spacingXSPx, W, charH+spacingSPx);
                         g.setColor(ALT_COLOR);
                         g.fillRect(0, H(1)-spacingXSPx-charH-spacingXSPx-horizBarHPx, W, horizBarHPx);
-                        str = competition.getState() == CompetitionState.SETUP ? 
+                        str = state == CompetitionState.SETUP ? 
                                 text.get("SETUP_TIME_LEFT") + " " :
                                 text.get("TIME_LEFT") + " ";
                         int prevWidth = getTextWidth(str);
@@ -1005,19 +1267,13 @@ public class DisplayFrame extends JFrame {
                         str = ((competition.getSession().getSecondsLeft()+1)/60) + ":" + 
                                 String.format("%02d", ((competition.getSession().getSecondsLeft()+1) % 60));
                         drawText(g, str, spacingXSPx+prevWidth, H(1)-spacingXSPx-charH, true);
+                        y = H(1)-spacingXSPx-charH-spacingXSPx-horizBarHPx;
+                        mark("time-left", 0, y, W, H-y, str);
                     } 
                     
                     break;
             }
             
-            if(GENERATE_THUMBNAIL) {
-                if(thumbIntervalCount == THUMB_INTERVAL) {
-                    thumbIntervalCount = 0;
-                    generateThumbnail();
-                }
-                thumbIntervalCount++;
-            }
-            
             // if the overlay list is being locked, don't wait, just skip this
             // part. otherwise, draw the overlays
             if(overlayLock.readLock().tryLock()) {
@@ -1027,6 +1283,9 @@ public class DisplayFrame extends JFrame {
                         if(overlay.drawableInThisMode(mode) && overlay.isVisible()) {
                             g.drawImage(overlay.getImage(), null,
                                         W(overlay.getX()), H(overlay.getY()));
+                            mark(overlay, W(overlay.getX()), H(overlay.getY()),
+                                 overlay.getImage().getWidth(),
+                                 overlay.getImage().getHeight(), overlay.getImage());
                         }
                     } finally {
                         overlay.getReadLock().unlock();
@@ -1035,46 +1294,148 @@ public class DisplayFrame extends JFrame {
                 overlayLock.readLock().unlock();
             }
             
-            renderedFrames++;
-            _g.drawImage(displayImage, 0, 0, null);
-            g.dispose();            
-            if(DRAW_RENDER_TIME) {                
-                String strFPS =
-                        String.format("%.2f",
-                                (float)renderedFrames/((System.nanoTime()-beginTime)/1000000000.0))
-                        + " fps";                
-                String strControlRenderTime = 
-                        cc.getControlFrame() != null ?
+        }
+        
+        /**
+         * Draw a static layer, composing it first if it is out of date
+         */
+        private void drawLayer(Graphics2D g, int layer) {
+            BufferedImage img;
+            synchronized(DisplayFrame.this) {
+                if(layerShowBanner != SHOW_BANNER) {
+                    layerShowBanner = SHOW_BANNER;
+                    layerVersion++;
+                }
+                img = layers[layer];
+                if(img == null || layerVersions[layer] != layerVersion ||
+                   img.getWidth() != W || img.getHeight() != H) {
+                    img = composeLayer(layer);
+                    layers[layer] = img;
+                    layerVersions[layer] = layerVersion;
+                }
+            }
+            g.drawImage(img, 0, 0, null);
+        }
+        
+        private BufferedImage composeLayer(int layer) {
+            Log.d(2, "DisplayFrame.composeLayer: " + layer + " at " + W + "x" + H);
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            BufferedImage img = gc != null ? gc.createCompatibleImage(W, H) :
+                    new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(BG_COLOR);
+            g.fillRect(0, 0, W, H);
+            
+            if(scaledBackgroundImage != null) {
+                switch(BG_ALIGNMENT) {
+                    case 0:
+                        g.drawImage(scaledBackgroundImage, 0, 0, null);
+                        break;
+                    case 1:
+                        g.drawImage(scaledBackgroundImage, 
+                                W(1)-scaledBackgroundImage.getWidth(), 0, null);
+                        break;
+                    case 2:
+                        g.drawImage(scaledBackgroundImage, 
+                                W(1)-scaledBackgroundImage.getWidth(), 
+                                H(1)-scaledBackgroundImage.getHeight(), null);
+                        break;
+                    case 3:
+                        g.drawImage(scaledBackgroundImage, 0, 
+                                H(1)-scaledBackgroundImage.getHeight(), null);
+                        break;
+                    case 4:
+                        g.drawImage(scaledBackgroundImage, 
+                                centeredX(scaledBackgroundImage.getWidth()), 
+                                0, null);
+                        break;
+                    case 5:
+                        g.drawImage(scaledBackgroundImage, 
+                                centeredX(scaledBackgroundImage.getWidth()),
+                                H(1)-scaledBackgroundImage.getHeight(), null);
+                        break;
+                    case 6:
+                        g.drawImage(scaledBackgroundImage, 
+                                centeredX(scaledBackgroundImage.getWidth()),
+                                centeredY(scaledBackgroundImage.getHeight()), null);
+                        break;
+                }
+            }
+            
+            String str;
+            int y;
+            switch(layer) {
+                case LAYER_LOGO:
+                    g.drawImage(scaledLogo,
+                            centeredX(scaledLogo.getWidth()),
+                            H(LOGO_Y_POSITION_PROPORTION) - scaledLogo.getHeight()/2,
+                            this);
+                    if(SHOW_BANNER && scaledBannerImage != null) {
+                        y = H(1)-scaledBannerImage.getHeight()-spacingSPx;
+                        g.drawImage(scaledBannerImage, W(1)-spacingSPx-scaledBannerImage.getWidth(), y, null);
+                    }
+                    break;
+                case LAYER_CLASSIFICATION:
+                    y = 5;
+                    str = text.get("CLASSIFICATION");
+                    drawText(g, str, centeredX(getTextWidth(str)), y, false);
+                    y += charH + spacingXSPx;
+                    str = text.get("POSITION");
+                    drawText(g, str, spacingLPx, y, false);
+                    str = text.get("TEAM");
+                    drawText(g, str, W(0.1), y, false);
+                    str = text.get("ID");
+                    drawText(g, str, W(0.6), y, false);
+                    str = text.get("SCORE");
+                    drawText(g, str, W(0.8), y, false);
+                    y += charH + spacingXSPx;
+                    g.setColor(SECONDARY_COLOR);
+                    g.fillRect(0, y, W(1), horizBarHPx);
+                    break;
+            }
+            g.dispose();
+            return img;
+        }
+        
+        private void drawRenderTime(Graphics _g) {
+            String[] lines = {
+                String.format("%.2f",
+                        (float)renderedFrames/((System.nanoTime()-beginTime)/1000000000.0))
+                        + " fps",
+                "display: " + String.format("%1$4s", renderTime/1000000) + " ms",
+                cc.getControlFrame() != null ?
                         ("control: " +
                         String.format("%1$4s", cc.getControlFrame().getRenderTime()/1000000) + " ms")
-                        : "";
-                
-                _g.setFont(new Font("Monospaced", Font.PLAIN, 14));
-                int txtHeight = _g.getFontMetrics().getHeight();
-                int txtDescent = _g.getFontMetrics().getDescent();
-                
-                int txtWidth = _g.getFontMetrics().stringWidth(strFPS);
-                _g.setColor(Color.BLACK);
-                _g.fillRect(W(1)-4-txtWidth, H(1)-txtHeight, txtWidth+4, txtHeight);
-                _g.setColor(Color.YELLOW);
-                _g.drawString(strFPS, W(1)-2-txtWidth, H(1)-txtDescent);
-                
-                txtWidth = _g.getFontMetrics().stringWidth(strControlRenderTime);
-                _g.setColor(Color.BLACK);
-                _g.fillRect(W(1)-4-txtWidth, H(1)-3*txtHeight, txtWidth+4, txtHeight);
-                _g.setColor(Color.YELLOW);
-                _g.drawString(strControlRenderTime, W(1)-2-txtWidth, H(1)-2*txtHeight-txtDescent);
-                
-                renderTime = System.nanoTime()-startTime;
-                String strRenderTime = "display: " + 
-                        String.format("%1$4s", renderTime/1000000) + " ms";
-                txtWidth = _g.getFontMetrics().stringWidth(strRenderTime);
+                        : "",
+                "touched: " + pixelsTouched + " px (" +
+                        (W*H == 0 ? 0 : 100*pixelsTouched/((long)W*H)) + "%)",
+                null
+            };
+            long bytes = allocationMeter == null ? -1 : allocationMeter.getBytesPerFrame();
+            lines[4] = "alloc: " +
+                    (bytes < 0 ? "n/a" : (bytes / 1024) + " KB/frame") +
+                    ", gc: " + (allocationMeter == null ? 0 :
+                                allocationMeter.getGcMsPerSecond()) + " ms/s" +
+                    ", buffers: " + displayBuffer.getAllocations();
+            
+            _g.setFont(new Font("Monospaced", Font.PLAIN, 14));
+            int txtHeight = _g.getFontMetrics().getHeight();
+            int txtDescent = _g.getFontMetrics().getDescent();
+            Rectangle bounds = null;
+            for(int i = 0; i < lines.length; i++) {
+                int txtWidth = _g.getFontMetrics().stringWidth(lines[i]);
+                Rectangle box = new Rectangle(W(1)-4-txtWidth, H(1)-(i+1)*txtHeight,
+                                              txtWidth+4, txtHeight);
                 _g.setColor(Color.BLACK);
-                _g.fillRect(W(1)-4-txtWidth, H(1)-2*txtHeight, txtWidth+4, txtHeight);
+                _g.fillRect(box.x, box.y, box.width, box.height);
                 _g.setColor(Color.YELLOW);
-                _g.drawString(strRenderTime, W(1)-2-txtWidth, H(1)-txtHeight-txtDescent);
-            }                        
-            drawing = false;
+                _g.drawString(lines[i], W(1)-2-txtWidth, H(1)-i*txtHeight-txtDescent);
+                bounds = bounds == null ? box : bounds.union(box);
+            }
+            // the next update repaints this area along with the damage
+            statsBounds = statsBounds == null ? bounds : statsBounds.union(bounds);
         }        
         
         private void drawClock(Graphics2D g, int high, int low, boolean red, int x, int y) {
@@ -1084,6 +1445,9 @@ public class DisplayFrame extends JFrame {
             int digit2 = low / 10 % 10;
             int digit3 = low % 10;
             int colonHalfSpace = (int)(spacingSPx * 10 * DIGITS_H);
+            int colonW = scaledBlueDigits[COLON].getWidth();
+            mark("clock", x-2*digitW-colonHalfSpace-colonW, y,
+                 4*digitW+2*colonHalfSpace+2*colonW, digitH, high, low, red);
             g.drawImage(!red ? scaledBlueDigits[digit0] : scaledRedDigits[digit0],
                     x-2*digitW-colonHalfSpace, y, this);
             g.drawImage(!red ? scaledBlueDigits[digit1] : scaledRedDigits[digit1],
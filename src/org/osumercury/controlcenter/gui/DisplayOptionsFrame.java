@@ -343,7 +343,7 @@ public class DisplayOptionsFrame extends JFrame {
                     } else if(tokens[0].equals("rendertime")) {
                         DisplayFrame.DRAW_RENDER_TIME = tokens[1].equals("1");
                     } else if(tokens[0].equals("refreshdelay")) {
-                        cc.getRefreshThread().setDelay(Long.parseLong(tokens[1]));
+                        cc.getFrameScheduler().setDelay(Long.parseLong(tokens[1]));
                     } else {
                         entries.put(tokens[0], tokens[1]);
                     }
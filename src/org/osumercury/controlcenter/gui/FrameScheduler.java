@@ -0,0 +1,197 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import org.osumercury.controlcenter.CompetitionState;
+import org.osumercury.controlcenter.ControlCenter;
+import org.osumercury.controlcenter.EventBus;
+import org.osumercury.controlcenter.Log;
+import org.osumercury.controlcenter.SessionState;
+
+/**
+ * Decides when the display and control windows draw a frame. A frame is
+ * drawn when something invalidated the screens (any event on the event
+ * bus, or a display setting or overlay change), at every wall clock second
+ * for the clocks, and continuously at the target rate while a session is
+ * running or something blinks. Otherwise nothing is drawn.
+ *
+ * Frames are paced on a fixed grid of the target period. If a frame is
+ * due while the previous one is still being drawn, or the scheduler woke
+ * up more than a period late, the frame is dropped and the grid moves on
+ * instead of the delay growing.
+ *
+ * @author wira
+ */
+public class FrameScheduler extends Thread {
+    private static final long SECOND_NS = 1000000000L;
+    // wake up slightly after the second boundary so the clocks changed
+    private static final long TICK_MARGIN_MS = 2;
+
+    private final ControlCenter cc;
+    private EventBus.Subscription subscription;
+    private volatile long periodNs;
+
+    // guarded by this
+    private boolean stop = false;
+    private boolean invalidated = true;
+    private long invalidatedAt = System.nanoTime();
+
+    // only touched by the scheduler thread
+    private long frames = 0;
+    private long dropped = 0;
+    private long lateNs = 0;
+
+    public FrameScheduler(ControlCenter cc, long periodMs) {
+        super("FrameScheduler");
+        this.cc = cc;
+        setDelay(periodMs);
+        setDaemon(true);
+    }
+
+    /**
+     * @param d target frame period in milliseconds
+     */
+    public void setDelay(long d) {
+        periodNs = Math.max(1, d) * 1000000;
+        invalidate();
+    }
+
+    /**
+     * Draw a frame as soon as the pacing allows
+     */
+    public synchronized void invalidate() {
+        if(!invalidated) {
+            invalidated = true;
+            invalidatedAt = System.nanoTime();
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        subscription = ControlCenter.getEventBus().subscribe("FrameScheduler",
+                (e) -> invalidate(), EventBus.DIRECT);
+        super.start();
+    }
+
+    public void stopThread() {
+        if(subscription != null) {
+            ControlCenter.getEventBus().unsubscribe(subscription);
+        }
+        synchronized(this) {
+            stop = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return true if the screens change continuously (time bars, blinking
+     *         flags), not just on events and second ticks
+     */
+    private boolean isAnimating() {
+        CompetitionState c = cc.getCompetitionState();
+        if(c == null) {
+            return false;
+        }
+        int state = c.getState();
+        if(state == CompetitionState.SETUP || state == CompetitionState.RUN) {
+            return true;
+        }
+        SessionState s = c.getSession();
+        return state == CompetitionState.POST_RUN && s != null &&
+               (s.isPaused() || c.redFlagged());
+    }
+
+    private static long untilNextSecondNs() {
+        long ms = System.currentTimeMillis() % 1000;
+        return (1000 - ms + TICK_MARGIN_MS) * 1000000;
+    }
+
+    @Override
+    public void run() {
+        Log.d(0, "FrameScheduler.run: target frame period = " + periodNs +
+                 " nanoseconds");
+        ControlCenter.beginTime = System.nanoTime();
+        DisplayFrame display = cc.getDisplayFrame();
+        ControlFrame control = cc.getControlFrame();
+        long slot = System.nanoTime();
+        long tick = slot + untilNextSecondNs();
+        while(true) {
+            long due;
+            synchronized(this) {
+                while(true) {
+                    if(stop) {
+                        Log.d(0, "FrameScheduler.run: exiting, " + getStats());
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    if(invalidated) {
+                        due = Math.max(slot, invalidatedAt);
+                    } else if(isAnimating()) {
+                        due = slot;
+                    } else {
+                        due = Math.max(slot, tick);
+                    }
+                    if(now >= due) {
+                        break;
+                    }
+                    long wait = due - now;
+                    try {
+                        wait(wait / 1000000, (int)(wait % 1000000));
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                invalidated = false;
+            }
+            long now = System.nanoTime();
+            if(now >= tick) {
+                tick = now + untilNextSecondNs();
+            }
+            long period = periodNs;
+            if(now - due > period) {
+                // woke up too late, skip the missed slots
+                dropped += (now - due) / period;
+                slot = now + period;
+            } else {
+                lateNs += now - due;
+                slot = due + period;
+            }
+            if(display.isDrawing()) {
+                // the change is still unpainted, try again at the next slot
+                Log.d(3, "FrameScheduler.run: display frame not ready");
+                dropped++;
+                synchronized(this) {
+                    invalidated = true;
+                }
+            } else {
+                display.repaintChanged();
+                frames++;
+            }
+            if(control != null) {
+                control.repaintDisplay();
+            }
+        }
+    }
+
+    /**
+     * @return frames scheduled, dropped and the average wake-up latency
+     */
+    public String getStats() {
+        return frames + " frame(s), " + dropped + " dropped, " +
+               (frames == 0 ? 0 : lateNs / frames / 1000) + " us late on average";
+    }
+}
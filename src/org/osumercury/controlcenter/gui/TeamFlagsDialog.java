@@ -52,7 +52,7 @@ public class TeamFlagsDialog extends JDialog {
         btnCancel = new JButton("Cancel");
         
         btnOK.addActionListener((e) -> {
-            Data.lock().writeLock().lock();
+            Data.lock().lockWrite();
             try {
                 t.clearAnnotations();
                 for(JCheckBox chkBox : flags) {
@@ -61,7 +61,7 @@ public class TeamFlagsDialog extends JDialog {
                     }
                 }
             } finally {
-                Data.lock().writeLock().unlock();
+                Data.lock().unlockWrite();
             }
             approved = true;
             dispose();
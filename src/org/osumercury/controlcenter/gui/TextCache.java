@@ -0,0 +1,127 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.gui;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of pre-rendered text strips, so that a string
+ * that is shown on every frame costs one image blit instead of one per
+ * character. Strips are keyed by the string and its color. They are
+ * rendered at the current glyph size or font, so the cache has to be
+ * cleared when either changes. The cache is bounded by the total number of
+ * pixels of the strips.
+ *
+ * @author wira
+ */
+class TextCache {
+    /**
+     * Rendered text, drawn at the text position offset by dx, dy
+     */
+    static final class Strip {
+        final BufferedImage image;
+        final int dx;
+        final int dy;
+
+        Strip(BufferedImage image, int dx, int dy) {
+            this.image = image;
+            this.dx = dx;
+            this.dy = dy;
+        }
+
+        long pixels() {
+            return (long) image.getWidth() * image.getHeight();
+        }
+    }
+
+    private static final class Key {
+        final String text;
+        final boolean white;
+
+        Key(String text, boolean white) {
+            this.text = text;
+            this.white = white;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return white == k.white && text.equals(k.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + (white ? 1 : 0);
+        }
+    }
+
+    private final long maxPixels;
+    private final LinkedHashMap<Key, Strip> strips =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private long pixels = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    TextCache(long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * @return the cached strip, or null if it has to be rendered and put
+     */
+    synchronized Strip get(String text, boolean white) {
+        Strip s = strips.get(new Key(text, white));
+        if(s == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return s;
+    }
+
+    synchronized void put(String text, boolean white, Strip s) {
+        Strip old = strips.put(new Key(text, white), s);
+        if(old != null) {
+            pixels -= old.pixels();
+        }
+        pixels += s.pixels();
+        Iterator<Map.Entry<Key, Strip>> i = strips.entrySet().iterator();
+        while(pixels > maxPixels && i.hasNext()) {
+            Strip eldest = i.next().getValue();
+            if(eldest == s) {
+                continue;
+            }
+            pixels -= eldest.pixels();
+            i.remove();
+        }
+    }
+
+    synchronized void clear() {
+        strips.clear();
+        pixels = 0;
+    }
+
+    synchronized String getStats() {
+        return strips.size() + " strip(s), " + pixels / 1024 + "K px, " +
+               hits + " hit(s), " + misses + " miss(es)";
+    }
+}
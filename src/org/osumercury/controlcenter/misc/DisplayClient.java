@@ -32,7 +32,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -287,7 +289,7 @@ public class DisplayClient {
             if(!fetchConfig) {
                 send("hash");
                 int serverHash = Integer.parseInt(r.readLine().split(" ")[1]);
-                int localHash = Config.getConfigString().hashCode();
+                int localHash = Config.getConfigHash();
                 Log.d(0, "- server config hash: " + serverHash + " local hash: " +
                         localHash);
                 if(serverHash != localHash) {
@@ -369,8 +371,8 @@ public class DisplayClient {
                     display.setUndecorated(true);
                 }
                 display.setVisible(true);
-                cc.getRefreshThread().start();
-                display.setClassificationData(c.getSortedClassifiedTeams());
+                cc.getFrameScheduler().start();
+                display.setClassificationData(c.getStandings());
                 if(lockMode >= 0 && lockMode <= 2) {
                     display.setMode(lockMode);
                 }
@@ -443,8 +445,7 @@ public class DisplayClient {
                     case "SESSION_ATTEMPT_COMMITTED":
                         t = c.getSession().getActiveTeam();
                         c.getSession().completeRun(true);
-                        c.sort();
-                        display.setClassificationData(c.getSortedClassifiedTeams());
+                        display.setClassificationData(c.getStandings());
                         display.newScore();
                         display.setBestScore(t.getBestScore());
                         break;
@@ -471,23 +472,20 @@ public class DisplayClient {
                         teamID = Integer.parseInt(tokens[0]);
                         t = c.getTeamByID(teamID);
                         t.addAnnotation(tokens[1]);
-                        c.sort();
-                        display.setClassificationData(c.getSortedClassifiedTeams());
+                        display.setClassificationData(c.getStandings());
                         break;
                     case "TEAM_REMOVED_ANNOTATION":
                         tokens = tokens[1].split(" ", 2);
                         teamID = Integer.parseInt(tokens[0]);
                         t = c.getTeamByID(teamID);
                         t.removeAnnotation(tokens[1]);
-                        c.sort();
-                        display.setClassificationData(c.getSortedClassifiedTeams());
+                        display.setClassificationData(c.getStandings());
                         break;
                     case "TEAM_CLEARED_ANNOTATION":
                         teamID = Integer.parseInt(tokens[1]);
                         t = c.getTeamByID(teamID);
                         t.clearAnnotations();
-                        c.sort();
-                        display.setClassificationData(c.getSortedClassifiedTeams());
+                        display.setClassificationData(c.getStandings());
                         break;
                 }
             }
@@ -519,16 +517,17 @@ public class DisplayClient {
         CompetitionState c = cc.getCompetitionState();
         int num = 0;
         for(Team t : c.getTeams()) {
-            t.getScores().clear();
+            t.clearScores();
             t.clearAnnotations();
         }        
         Log.d(0, "- getting current data");            
         send("data");
+        List<String> rows = new ArrayList<>();
         while(!(d = r.readLine()).equals("DONE")) {
             Log.d(1, d);
-            Data.parseCSVLine(c, d.split(" ", 2)[1]);
-            num++;
+            rows.add(d.split(" ", 2)[1]);
         }
+        num = Data.importCSV(c, rows);
         Log.d(0, "- " + num + " records parsed");
         Log.d(0, "- getting annotations");
         send("annotations");
@@ -537,7 +536,7 @@ public class DisplayClient {
             tokens = d.split("\\s+", 3);
             annotations = tokens[2].split(",");
             teamID = Integer.parseInt(tokens[1]);
-            Data.lock().writeLock().lock();
+            Data.lock().lockWrite();
             try {
                 Team t = c.getTeamByID(teamID);
                 if(t == null) {
@@ -547,11 +546,10 @@ public class DisplayClient {
                     t.addAnnotation(a);
                 }
             } finally {
-                Data.lock().writeLock().unlock();
+                Data.lock().unlockWrite();
             }
         }
-        c.sort();
-        cc.getDisplayFrame().setClassificationData(c.getSortedClassifiedTeams());
+        cc.getDisplayFrame().setClassificationData(c.getStandings());
         
         if(monitoring) {
             send("monitor");
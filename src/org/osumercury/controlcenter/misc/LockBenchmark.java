@@ -0,0 +1,196 @@
+/*
+    Copyright 2016-2018 Wira Mulia
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package org.osumercury.controlcenter.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.osumercury.controlcenter.DataLock;
+
+/**
+ * Compare commit latency under reader contention between the old fair
+ * ReentrantReadWriteLock and DataLock. Readers continuously walk every
+ * team's score list (about what building a standings snapshot costs)
+ * while a single writer commits scores at a fixed interval, the time each
+ * commit takes from asking for the lock to releasing it is recorded.
+ *
+ * Usage: java -cp merccc.jar org.osumercury.controlcenter.misc.LockBenchmark
+ *        [readers] [commits] [teams]
+ *
+ * @author wira
+ */
+public class LockBenchmark {
+    private static final int FIELDS = 8;
+    private static final long COMMIT_INTERVAL_NS = 200_000;
+
+    private final List<List<double[]>> teams = new ArrayList<>();
+    private volatile boolean running;
+    private volatile double sink;
+
+    private interface Access {
+        String name();
+        void write(Runnable r);
+        double read();
+    }
+
+    private LockBenchmark(int teamCount) {
+        for(int i = 0; i < teamCount; i++) {
+            List<double[]> scores = new ArrayList<>();
+            scores.add(new double[FIELDS]);
+            teams.add(scores);
+        }
+    }
+
+    private double walk() {
+        double total = 0;
+        for(List<double[]> scores : teams) {
+            for(int i = 0; i < scores.size(); i++) {
+                double[] s = scores.get(i);
+                for(int j = 0; j < s.length; j++) {
+                    total += s[j];
+                }
+            }
+        }
+        return total;
+    }
+
+    private void commit(int n) {
+        double[] s = new double[FIELDS];
+        Arrays.fill(s, n);
+        teams.get(n % teams.size()).add(s);
+    }
+
+    private void reset() {
+        for(List<double[]> scores : teams) {
+            scores.subList(1, scores.size()).clear();
+        }
+    }
+
+    private long[] run(Access access, int readers, int commits)
+            throws InterruptedException {
+        reset();
+        running = true;
+        Thread[] threads = new Thread[readers];
+        for(int i = 0; i < readers; i++) {
+            threads[i] = new Thread(() -> {
+                double total = 0;
+                while(running) {
+                    total += access.read();
+                }
+                sink = total;
+            });
+            threads[i].start();
+        }
+        long[] latencies = new long[commits];
+        for(int i = 0; i < commits; i++) {
+            final int n = i;
+            long start = System.nanoTime();
+            access.write(() -> commit(n));
+            latencies[i] = System.nanoTime() - start;
+            LockSupport.parkNanos(COMMIT_INTERVAL_NS);
+        }
+        running = false;
+        for(Thread t : threads) {
+            t.join();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void print(String name, long[] l) {
+        long sum = 0;
+        for(long v : l) {
+            sum += v;
+        }
+        System.out.printf("%-24s mean %8.1f us  p50 %8.1f us  p99 %8.1f us  " +
+                          "max %8.1f us%n", name,
+                          sum / (double) l.length / 1000.0,
+                          l[l.length / 2] / 1000.0,
+                          l[(int)(l.length * 0.99)] / 1000.0,
+                          l[l.length - 1] / 1000.0);
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int teamCount = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        LockBenchmark b = new LockBenchmark(teamCount);
+
+        ReentrantReadWriteLock rw = new ReentrantReadWriteLock(true);
+        Access fair = new Access() {
+            @Override
+            public String name() {
+                return "ReentrantReadWriteLock";
+            }
+
+            @Override
+            public void write(Runnable r) {
+                rw.writeLock().lock();
+                try {
+                    r.run();
+                } finally {
+                    rw.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public double read() {
+                rw.readLock().lock();
+                try {
+                    return b.walk();
+                } finally {
+                    rw.readLock().unlock();
+                }
+            }
+        };
+
+        DataLock dl = new DataLock();
+        Access stamped = new Access() {
+            @Override
+            public String name() {
+                return "DataLock";
+            }
+
+            @Override
+            public void write(Runnable r) {
+                dl.lockWrite();
+                try {
+                    r.run();
+                } finally {
+                    dl.unlockWrite();
+                }
+            }
+
+            @Override
+            public double read() {
+                return dl.read(b::walk);
+            }
+        };
+
+        System.out.println("LockBenchmark: " + readers + " readers, " +
+                           commits + " commits, " + teamCount + " teams");
+        // warm up both paths before measuring
+        b.run(fair, readers, commits / 5);
+        b.run(stamped, readers, commits / 5);
+        for(Access a : new Access[] {fair, stamped}) {
+            print(a.name(), b.run(a, readers, commits));
+        }
+        System.out.println("DataLock reads: " + dl.getOptimisticReads() +
+                           " optimistic, " + dl.getLockedReads() + " locked");
+    }
+}
@@ -26,6 +26,7 @@ import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
 import org.osumercury.controlcenter.Log;
+import org.osumercury.controlcenter.ResourceProvider;
 
 /**
  * Some tools to transfer string and files over a socket connection
@@ -88,41 +89,85 @@ public class Sock {
      */
     public static void put(Socket s, String fileName, 
             Progress p) throws IOException {
-        String d;
         List<FileEntry> fileList = new ArrayList<>();
         File file = new File(fileName);
-        FileInputStream in;
+        try {
+            populateFileList(file.getParentFile(), file, fileList, true);
+        } catch(IOException ioe) {
+            send(s, "-1");
+            return;
+        }
+        String[] names = new String[fileList.size()];
+        long[] sizes = new long[fileList.size()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = fileList.get(i).getRelativePath();
+            sizes[i] = fileList.get(i).getFile().length();
+        }
+        put(s, names, sizes,
+            i -> new FileInputStream(fileList.get(i).getFile()), p);
+    }
+    
+    /**
+     * Transfer the files of a resource directory (not recursive) in the
+     * same way as {@link #put(Socket, String, Progress) put}. The files are
+     * streamed from the provider, e.g. directly out of a zip archive.
+     * 
+     * @param s Socket handle to use
+     * @param resources Directory to transfer
+     * @param p Progress handle to use (can be null)
+     * @throws IOException if an I/O exception occurs
+     */
+    public static void put(Socket s, ResourceProvider resources,
+            Progress p) throws IOException {
+        List<String> files = resources.list();
+        String[] names = new String[files.size()];
+        long[] sizes = new long[files.size()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = resources.getName() + "/" + files.get(i);
+            sizes[i] = resources.size(files.get(i));
+            if(sizes[i] < 0) {
+                send(s, "-1");
+                return;
+            }
+        }
+        put(s, names, sizes, i -> resources.open(files.get(i)), p);
+    }
+    
+    private interface Opener {
+        InputStream open(int i) throws IOException;
+    }
+    
+    private static void put(Socket s, String[] names, long[] sizes,
+            Opener opener, Progress p) throws IOException {
+        String d;
+        InputStream in;
         byte[] sendBuffer = new byte[SEND_BUFFER_SIZE];
         int nr;
         try {
             long totalBytes = 0L;
-            populateFileList(file.getParentFile(), file, fileList, true);
-            send(s, String.valueOf(fileList.size()));
-            for(FileEntry f : fileList) {
-                send(s, String.valueOf(f.getFile().length()) + " " +
-                        f.getRelativePath());
-                totalBytes += f.getFile().length();
+            send(s, String.valueOf(names.length));
+            for(int i = 0; i < names.length; i++) {
+                send(s, String.valueOf(sizes[i]) + " " + names[i]);
+                totalBytes += sizes[i];
             }
             send(s, String.valueOf(totalBytes));
             if(p != null) {
                 p.copiedTotalBytes = 0;
-                p.totalFiles = fileList.size();
+                p.totalFiles = names.length;
                 p.totalBytes = totalBytes;
             }
-            for(int i = 0; i < fileList.size(); i++) {
-                FileEntry f = fileList.get(i);
-                File fileHandle =  f.getFile();
+            for(int i = 0; i < names.length; i++) {
                 if(p != null) {
                     p.currentFileNumber = i + 1;
                     p.currentFileCopied = 0;
-                    p.currentFileSize = fileHandle.length();
-                    p.name = f.getRelativePath();
+                    p.currentFileSize = sizes[i];
+                    p.name = names[i];
                 }
                 Log.d(1, "put " + String.format("[%1$15s]", 
-                        NumberFormat.getIntegerInstance().format(fileHandle.length()))
-                        + " " + f.getRelativePath());
+                        NumberFormat.getIntegerInstance().format(sizes[i]))
+                        + " " + names[i]);
                 // transfer bytes
-                in = new FileInputStream(fileHandle);
+                in = opener.open(i);
                 while((nr = in.read(sendBuffer)) != -1) {
                     s.getOutputStream().write(sendBuffer, 0, nr);
                     if(p != null) {
@@ -19,6 +19,7 @@ import java.awt.image.BufferedImage;
 import org.osumercury.controlcenter.*;
 import org.osumercury.controlcenter.gui.ControlFrame;
 import org.osumercury.controlcenter.gui.DisplayOverlay;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -39,6 +40,8 @@ import javax.swing.SwingUtilities;
  * @author wira
  */
 public class SocketInterface extends Thread {
+    public static final int MONITOR_QUEUE_CAPACITY = 4096;
+    
     private final int port;
     private CompetitionState c;
     private final ControlCenter cc;
@@ -49,9 +52,6 @@ public class SocketInterface extends Thread {
     private final boolean allowResourceCopy;
     private final boolean gui;
     
-    private final ScoreChangedCallback scoreChangedCallback;
-    private final UserEvent userEvent;    
-    
     public SocketInterface(int port, ControlCenter cc, ControlFrame f,
             boolean local, boolean allowResourceCopy) {
         this.port = port;
@@ -62,114 +62,79 @@ public class SocketInterface extends Thread {
         this.local = local;
         this.allowResourceCopy = allowResourceCopy;
         clientHandlers = new LinkedList();
-        scoreChangedCallback = (key, ID, value) -> {
-            broadcast("SCORE_CHANGE " + key + " " + ID + " " + value);
-        };
-        ControlCenter.addScoreChangedHook(scoreChangedCallback);
-        userEvent = (ID, param) -> {
-            Object[] p;
-            SessionState s;
-            int run;
-            Team t;
-            switch(ID) {
-                case UserEvent.STATE_CHANGE_IDLE:
-                    broadcast("STATE_CHANGE_IDLE");
-                    break;
-                case UserEvent.STATE_CHANGE_SETUP:
-                    p = (Object[]) param;
-                    broadcast("STATE_CHANGE_SETUP " +
-                            c.getSession().getActiveTeam().getNumber() + " " +
-                            (Integer)p[0] + " " + (Long)p[1] + " " +
-                            (Long)p[2]);
-                    break;
-                case UserEvent.STATE_CHANGE_RUN:
-                    broadcast("STATE_CHANGE_RUN");
-                    break;
-                case UserEvent.STATE_CHANGE_POSTRUN:
-                    broadcast("STATE_CHANGE_POSTRUN");
-                    break;
-                case UserEvent.SESSION_PAUSED:
-                    broadcast("SESSION_PAUSED");
-                    break;
-                case UserEvent.SESSION_RESUMED:
-                    broadcast("SESSION_RESUMED");
-                    break;
-                case UserEvent.SESSION_REDFLAGGED:
-                    broadcast("SESSION_REDFLAGGED");
-                    break;
-                case UserEvent.SESSION_GREENFLAGGED:
-                    broadcast("SESSION_GREENFLAGGED");
-                    break;
-                case UserEvent.SESSION_ATTEMPT_COMMITTED:
-                    s = c.getSession();
-                    t = s.getActiveTeam();
-                    run = (Integer) param;
-                    broadcast("SESSION_ATTEMPT_COMMITTED " + t.getNumber() + 
-                            " " + run + " " +
-                            s.getActiveScoreList().get(run-1).getScore());
-                    break;
-                case UserEvent.SESSION_ATTEMPT_DISCARDED:
-                    s = c.getSession();
-                    t = s.getActiveTeam();
-                    run = (Integer) param;
-                    broadcast("SESSION_ATTEMPT_DISCARDED " + t.getNumber() + 
-                            " " + run);
-                    break;
-                case UserEvent.SESSION_TIME_ADDED:
-                    broadcast("SESSION_TIME_ADDED " + (Long)param);
-                    break;
-                case UserEvent.DATA_CLEARED:
-                    broadcast("DATA_CLEARED");
-                    break;
-                case UserEvent.DATA_IMPORTED:
-                    broadcast("DATA_IMPORTED");
-                    break;
-                case UserEvent.DATA_RECORD_EXPUNGED:
-                    p = (Object[]) param;
-                    broadcast("DATA_RECORD_EXPUNGED " + (Integer)p[0] + " " 
-                            + (Integer)p[1]);
-                    break;
-                case UserEvent.DATA_CHANGED:
-                    p = (Object[]) param;
-                    broadcast("DATA_CHANGED " + (Integer)p[0] + " " 
-                            + (Integer)p[1] + " " + p[2] + " " + (Double)p[3]);
-                    break;
-                case UserEvent.DATA_ADDED:
-                    p = (Object[]) param;
-                    broadcast("DATA_ADDED " + (Integer)p[0] + " " +
-                            (Integer)p[1]);
-                    break;
-                case UserEvent.TEAM_PRE_SELECT:
-                    broadcast("TEAM_PRE_SELECT " + (Integer)param);
-                    break;
-                case UserEvent.DISPLAY_MODE_CHANGE:
-                    broadcast("DISPLAY_MODE_CHANGE " + (Integer)param);
-                    break;
-                case UserEvent.DISPLAY_HIDE:
-                    broadcast("DISPLAY_HIDE");
-                    break;
-                case UserEvent.DISPLAY_SHOW:
-                    broadcast("DISPLAY_SHOW");
-                    break;
-                case UserEvent.DISPLAY_RANK_START:
-                    broadcast("DISPLAY_RANK_START " + (Integer)param);
-                    break;
-                case UserEvent.TEAM_ADDED_ANNOTATION:
-                    p = (Object[]) param;
-                    broadcast("TEAM_ADDED_ANNOTATION " + (Integer)p[0] + " " +
-                              (String)p[1]);
-                    break;
-                case UserEvent.TEAM_REMOVED_ANNOTATION:
-                    p = (Object[]) param;
-                    broadcast("TEAM_REMOVED_ANNOTATION " + (Integer)p[0] + " " +
-                              (String)p[1]);
-                    break;
-                case UserEvent.TEAM_CLEARED_ANNOTATION:
-                    broadcast("TEAM_CLEARED_ANNOTATION " + (Integer)param);
-                    break;
-            }
-        };
-        ControlCenter.addUserEventHook(userEvent);
+    }
+    
+    /**
+     * @return the monitor line for the event, null if clients are not
+     *         told about it
+     */
+    private static String toMonitorLine(Event e) {
+        // events of other tracks are prefixed with the track ID, clients
+        // that only know about the default track ignore them
+        String p = e.isOnDefaultTrack() ? "" : "@" + e.getTrack() + " ";
+        switch(e.getID()) {
+            case UserEvent.SCORE_CHANGED:
+                return p + "SCORE_CHANGE " + e.getKey() + " " + e.getIndex() +
+                        " " + e.getText();
+            case UserEvent.STATE_CHANGE_IDLE:
+                return p + "STATE_CHANGE_IDLE";
+            case UserEvent.STATE_CHANGE_SETUP:
+                return p + "STATE_CHANGE_SETUP " + e.getTeamNumber() + " " +
+                        e.getIndex() + " " + e.getSeconds() + " " +
+                        e.getWindowSeconds();
+            case UserEvent.STATE_CHANGE_RUN:
+                return p + "STATE_CHANGE_RUN";
+            case UserEvent.STATE_CHANGE_POSTRUN:
+                return p + "STATE_CHANGE_POSTRUN";
+            case UserEvent.SESSION_PAUSED:
+                return p + "SESSION_PAUSED";
+            case UserEvent.SESSION_RESUMED:
+                return p + "SESSION_RESUMED";
+            case UserEvent.SESSION_REDFLAGGED:
+                return p + "SESSION_REDFLAGGED";
+            case UserEvent.SESSION_GREENFLAGGED:
+                return p + "SESSION_GREENFLAGGED";
+            case UserEvent.SESSION_ATTEMPT_COMMITTED:
+                return p + "SESSION_ATTEMPT_COMMITTED " + e.getTeamNumber() +
+                        " " + e.getIndex() + " " + e.getValue();
+            case UserEvent.SESSION_ATTEMPT_DISCARDED:
+                return p + "SESSION_ATTEMPT_DISCARDED " + e.getTeamNumber() +
+                        " " + e.getIndex();
+            case UserEvent.SESSION_TIME_ADDED:
+                return p + "SESSION_TIME_ADDED " + e.getSeconds();
+            case UserEvent.DATA_CLEARED:
+                return p + "DATA_CLEARED";
+            case UserEvent.DATA_IMPORTED:
+                return p + "DATA_IMPORTED";
+            case UserEvent.DATA_RECORD_EXPUNGED:
+                return p + "DATA_RECORD_EXPUNGED " + e.getTeamNumber() + " " +
+                        e.getIndex();
+            case UserEvent.DATA_CHANGED:
+                return p + "DATA_CHANGED " + e.getTeamNumber() + " " +
+                        e.getIndex() + " " + e.getKey() + " " + e.getValue();
+            case UserEvent.DATA_ADDED:
+                return p + "DATA_ADDED " + e.getTeamNumber() + " " +
+                        e.getIndex();
+            case UserEvent.TEAM_PRE_SELECT:
+                return p + "TEAM_PRE_SELECT " + e.getTeamNumber();
+            case UserEvent.DISPLAY_MODE_CHANGE:
+                return p + "DISPLAY_MODE_CHANGE " + e.getIndex();
+            case UserEvent.DISPLAY_HIDE:
+                return p + "DISPLAY_HIDE";
+            case UserEvent.DISPLAY_SHOW:
+                return p + "DISPLAY_SHOW";
+            case UserEvent.DISPLAY_RANK_START:
+                return p + "DISPLAY_RANK_START " + e.getIndex();
+            case UserEvent.TEAM_ADDED_ANNOTATION:
+                return p + "TEAM_ADDED_ANNOTATION " + e.getTeamNumber() + " " +
+                          e.getKey();
+            case UserEvent.TEAM_REMOVED_ANNOTATION:
+                return p + "TEAM_REMOVED_ANNOTATION " + e.getTeamNumber() + " " +
+                          e.getKey();
+            case UserEvent.TEAM_CLEARED_ANNOTATION:
+                return p + "TEAM_CLEARED_ANNOTATION " + e.getTeamNumber();
+        }
+        return null;
     }
     
     public boolean listen() {
@@ -227,8 +192,6 @@ public class SocketInterface extends Thread {
     }
     
     public void close() {
-        ControlCenter.removeScoreChangedCallback(scoreChangedCallback);
-        ControlCenter.removeUserEventHook(userEvent);
         if(ss != null) {
             try {
                 ss.close();
@@ -258,8 +221,8 @@ public class SocketInterface extends Thread {
         private boolean stop = false;
         private boolean monitor = false;
         private boolean prompt = true;
-        private SessionTimer timer;
         private final Callback stateChangeCallback;
+        private EventBus.Subscription subscription;
         
         public ClientHandler(Socket s) {
             this.s = s;            
@@ -300,7 +263,9 @@ public class SocketInterface extends Thread {
                     if(line.equals("monitor") && !monitor) {
                         send("MONITOR");
                         monitor = true;
+                        subscribe();
                     } else if(line.equals("break") && monitor) {
+                        unsubscribe();
                         send("COMMAND");
                         monitor = false;
                         sendPrompt();
@@ -329,17 +294,17 @@ public class SocketInterface extends Thread {
                                 send("DONE");
                                 break;
                             case "teams":
-                                for(Team t : c.getTeams()) {
+                                for(StandingsSnapshot.Entry t : c.getStandings().getTeams()) {
                                     send("TEAM " + t.getNumber() + ", " +
                                             t.getName() + ", " +
                                             t.getInstitution() + ", " +
                                             t.getLogoFileName() + ", " +
-                                            (t.hasScore() ? t.getBestScore().getScore() : "DNF"));
+                                            (t.getBestScore() != null ? t.getBestScore() : "DNF"));
                                 }
                                 send("DONE");
                                 break;
                             case "annotations": 
-                                for(Team t : c.getTeams()) {
+                                for(StandingsSnapshot.Entry t : c.getStandings().getTeams()) {
                                     List<String> annotations = t.getAnnotations();
                                     if(!annotations.isEmpty()) {
                                         StringBuilder sb = new StringBuilder();
@@ -382,9 +347,19 @@ public class SocketInterface extends Thread {
                                 }
                                 send("DONE");
                                 break;
+                            case "tracks":
+                                for(Track track : c.getTracks()) {
+                                    Team active = track.getActiveTeam();
+                                    send("TRACK " + track.getID() + " " +
+                                            track.getState() +
+                                            (active != null ?
+                                            " " + active.getNumber() : ""));
+                                }
+                                send("DONE");
+                                break;
                             case "hash":
                                 send("HASH " + String.valueOf(
-                                        Config.getConfigString().hashCode()));
+                                        Config.getConfigHash()));
                                 break;
                             case "resolution":
                                 if(gui && cc.getDisplayFrame().isVisible()) {
@@ -403,7 +378,13 @@ public class SocketInterface extends Thread {
                             case "resources":
                                 if(allowResourceCopy) {
                                     Log.d(0, "resource request");
-                                    Sock.put(s, cc.getResourcePath().getAbsolutePath(), null);
+                                    if(cc.getResourcePath() != null) {
+                                        Sock.put(s, cc.getResourcePath().getAbsolutePath(), null);
+                                    } else if(cc.getResources() != null) {
+                                        Sock.put(s, cc.getResources(), null);
+                                    } else {
+                                        Sock.send(s, "-1");
+                                    }
                                 } else {
                                     Log.d(0, "resource request is not allowed");
                                     Sock.send(s, "-1");
@@ -447,21 +428,49 @@ public class SocketInterface extends Thread {
                 return;
             }
             Log.d(1, "SocketInterface$ClientHandler.handleCommand: " + line);
+            // session commands can be addressed to a track with "@id command"
+            Track track = c.getTrack();
+            if(tokens[0].startsWith("@")) {
+                track = c.getTrack(tokens[0].substring(1));
+                if(track == null || tokens.length == 1) {
+                    send("ERROR unknown track or missing command");
+                    return;
+                }
+                tokens = Arrays.copyOfRange(tokens, 1, tokens.length);
+            }
+            // only the default track is driven by the control GUI
+            boolean control = gui && cf != null && track.isDefault();
             switch(tokens[0]) {
+                case "add-track":
+                    if(tokens.length == 2 && !tokens[1].startsWith("@")) {
+                        c.addTrack(tokens[1]);
+                        send("OK");
+                    } else {
+                        send("ERROR");
+                    }
+                    break;
+                case "remove-track":
+                    if(tokens.length == 2 && c.removeTrack(tokens[1])) {
+                        send("OK");
+                    } else {
+                        send("ERROR track is the default track, not idle " +
+                             "or does not exist");
+                    }
+                    break;
                 case "add-score":
-                    if(tokens.length == (2 + Score.getFields().size())) {
+                    if(tokens.length == (2 + Score.getFieldCount())) {
                         try {
                             score = new Score();
-                            List<String> fields = Config.getKeysInOriginalOrder("fields");
-                            i = 2;
-                            for(String field : fields) {
-                                score.setValue(field, Double.parseDouble(tokens[i]));
-                                i++;
+                            for(i = 0; i < Score.getFieldCount(); i++) {
+                                score.setValue(i, Double.parseDouble(tokens[i+2]));
                             }
                             score.setCompleted(true);
-                            Data.lock().writeLock().lock();
+                            Data.lock().lockWrite();
                             t = c.getTeamByID(Integer.parseInt(tokens[1]));
                             t.addScore(score);
+                            ControlCenter.triggerEvent(Event.record(
+                                    UserEvent.DATA_ADDED, t.getNumber(),
+                                    t.getScores().size()-1));
                             c.sort();
                             if(gui && cf != null) {
                                 cf.refreshDataView();
@@ -472,7 +481,7 @@ public class SocketInterface extends Thread {
                                      e);
                             send("ERROR");
                         } finally {
-                            Data.lock().writeLock().unlock();
+                            Data.lock().unlockWrite();
                         }
                     } else {
                         send("ERROR");
@@ -536,7 +545,41 @@ public class SocketInterface extends Thread {
                         try {
                             path = new File(tokens[1]);
                             Data.loadCSV(c, path.getCanonicalPath());
-                            c.sort();
+                            if(gui && cf != null) {
+                                cf.refreshDataView();
+                            }
+                            send("OK");
+                        } catch(Exception e) {
+                            Log.d(0, "SocketInterface$ClientHandler.handleCommand: " +
+                                     e);
+                            send("ERROR " + e);
+                        }
+                    } else {
+                        send("ERROR");
+                    }
+                    break;
+                case "save-snapshot":
+                    tokens = line.trim().split("\\s+", 2);
+                    if(tokens.length == 2) {
+                        try {
+                            path = new File(tokens[1]);
+                            Snapshot.save(c, path.getCanonicalFile());
+                            send("OK");
+                        } catch(Exception e) {
+                            Log.d(0, "SocketInterface$ClientHandler.handleCommand: " +
+                                     e);
+                            send("ERROR " + e);
+                        }
+                    } else {
+                        send("ERROR");
+                    }
+                    break;
+                case "load-snapshot":
+                    tokens = line.trim().split("\\s+", 2);
+                    if(tokens.length == 2) {
+                        try {
+                            path = new File(tokens[1]);
+                            Snapshot.load(c, path.getCanonicalFile());
                             if(gui && cf != null) {
                                 cf.refreshDataView();
                             }
@@ -553,20 +596,21 @@ public class SocketInterface extends Thread {
                 case "change-active-score-field":
                     if(tokens.length == 3) {
                         try {
-                            if(c.getState() != CompetitionState.RUN && 
-                                    c.getState() != CompetitionState.POST_RUN) {
+                            if(track.getState() != CompetitionState.RUN && 
+                                    track.getState() != CompetitionState.POST_RUN) {
                                 send("ERROR not in RUN nor POST-RUN state");
                             } else {
                                 if(Score.getFields().containsKey(tokens[1])) {
                                     double value = Double.parseDouble(tokens[2]);
-                                    if(gui && cf != null) {
+                                    if(control) {
                                         cf.setCurrentScore(tokens[1], value);
                                     } else {
-                                        ControlCenter.triggerScoreChangeEvent(tokens[1],
-                                            Score.getFieldID(tokens[1]), 
-                                            tokens[2]);
+                                        ControlCenter.triggerEvent(Event.scoreChanged(
+                                            tokens[1],
+                                            Score.getFieldID(tokens[1]),
+                                            tokens[2]).onTrack(track.getID()));
                                     }
-                                    session = cc.getCompetitionState().getSession();
+                                    session = track.getSession();
                                     session.modifyCurrentScore(tokens[1], value);
                                     send("OK");
                                 } else {
@@ -584,14 +628,14 @@ public class SocketInterface extends Thread {
                     break;
                 case "get-current-score":
                     try {
-                        if(c.getState() != CompetitionState.RUN && 
-                                c.getState() != CompetitionState.POST_RUN) {
+                        if(track.getState() != CompetitionState.RUN && 
+                                track.getState() != CompetitionState.POST_RUN) {
                             send("ERROR not in RUN nor POST-RUN state");
                         } else {
-                            String ret = "CURRENT RUN=" + c.getSession().getRunNumber() + " ";
-                            for(String key : Config.getKeysInOriginalOrder("fields")) {
-                                ret += key + "=";
-                                ret += c.getSession().getCurrentScoreValue(key) + " ";
+                            String ret = "CURRENT RUN=" + track.getSession().getRunNumber() + " ";
+                            for(i = 0; i < Score.getFieldCount(); i++) {
+                                ret += Score.getFieldKey(i) + "=";
+                                ret += track.getSession().getCurrentScoreValue(i) + " ";
                             }
                             send(ret);
                         }
@@ -604,7 +648,7 @@ public class SocketInterface extends Thread {
                 case "start-scoring-session":
                     if(tokens.length == 5) {
                         try {
-                            if(c.getState() != CompetitionState.IDLE) {
+                            if(track.getState() != CompetitionState.IDLE) {
                                 send("ERROR competition is not in IDLE state");
                             } else {
                                 int teamID = Integer.parseInt(tokens[1]);
@@ -616,21 +660,21 @@ public class SocketInterface extends Thread {
                                 int attempts = Integer.parseInt(tokens[2]);
                                 int setupWindow = Integer.parseInt(tokens[3]);
                                 int runWindow = Integer.parseInt(tokens[4]);
-                                if(gui && cf != null) {
+                                if(c.getTrackOf(t) != null) {
+                                    send("ERROR team is already running on track " +
+                                         c.getTrackOf(t).getID());
+                                    break;
+                                }
+                                if(control) {
                                     cf.setRunParameters(attempts, 
                                                         setupWindow/1000, 
                                                         runWindow/1000);
                                     cf.setSelectedTeamID(teamID);
                                 } else {
-                                    c.newSession(t, attempts, setupWindow, runWindow);
-                                    if(timer != null) {
-                                        timer.stopTimer();
-                                    }
-                                    timer = new SessionTimer(c);
-                                    c.getSession().start();
-                                    timer.start();
+                                    track.newSession(t, attempts, setupWindow, runWindow);
+                                    track.startSession();
                                 }
-                                c.setState(CompetitionState.SETUP);
+                                track.setState(CompetitionState.SETUP);
                                 send("OK");
                             }
                         } catch(Exception e) {
@@ -643,69 +687,69 @@ public class SocketInterface extends Thread {
                     }
                     break;
                 case "end-scoring-session":
-                    if(c.getState() == CompetitionState.IDLE) {
+                    if(track.getState() == CompetitionState.IDLE) {
                         send("ERROR competition state is IDLE");
                     } else {
-                        if(!gui && timer != null) {
-                            timer.stopTimer();
+                        if(!control) {
+                            track.stopScheduler();
                         }
-                        if(c.redFlagged()) {
-                            c.setRedFlag(false);
+                        if(track.redFlagged()) {
+                            track.setRedFlag(false);
                         }
-                        c.setState(CompetitionState.IDLE);
+                        track.setState(CompetitionState.IDLE);
                         send("OK");
                     }
                     break;
                 case "skip-setup":
-                    if(c.getState() == CompetitionState.SETUP) {
-                        c.setState(CompetitionState.RUN);
+                    if(track.getState() == CompetitionState.SETUP) {
+                        track.setState(CompetitionState.RUN);
                         send("OK");
                     } else {
                         send("ERROR not in SETUP state");
                     }
                     break;
                 case "pause":
-                    if(c.getState() == CompetitionState.SETUP ||
-                            c.getState() == CompetitionState.RUN) {
-                        c.getSession().pauseTimer();
+                    if(track.getState() == CompetitionState.SETUP ||
+                            track.getState() == CompetitionState.RUN) {
+                        track.getSession().pauseTimer();
                         send("OK");
                     } else {
                         send("ERROR not in SETUP nor RUN state");
                     }
                     break;
                 case "resume":
-                    if(c.getState() == CompetitionState.SETUP ||
-                            c.getState() == CompetitionState.RUN) {
-                        c.getSession().resumeTimer();
+                    if(track.getState() == CompetitionState.SETUP ||
+                            track.getState() == CompetitionState.RUN) {
+                        track.getSession().resumeTimer();
                         send("OK");
                     } else {
                         send("ERROR not in SETUP nor RUN state");
                     }
                     break;
                 case "redflag":
-                    if(c.getState() == CompetitionState.SETUP ||
-                            c.getState() == CompetitionState.RUN) {
-                        c.setRedFlag(true);
+                    if(track.getState() == CompetitionState.SETUP ||
+                            track.getState() == CompetitionState.RUN) {
+                        track.setRedFlag(true);
                         send("OK");
                     } else {
                         send("ERROR not in SETUP nor RUN state");
                     }
                     break;
                 case "greenflag":
-                    if(c.getState() == CompetitionState.SETUP ||
-                            c.getState() == CompetitionState.RUN) {
-                        c.setRedFlag(false);
+                    if(track.getState() == CompetitionState.SETUP ||
+                            track.getState() == CompetitionState.RUN) {
+                        track.setRedFlag(false);
                         send("OK");
                     } else {
                         send("ERROR not in SETUP nor RUN state");
                     }
                     break;
                 case "commit-score":
-                    session = c.getSession();
-                    if(c.getState() < CompetitionState.RUN) {
+                    session = track.getSession();
+                    if(track.getState() < CompetitionState.RUN) {
                         send("ERROR must be in RUN or POST-RUN state");
                     } else if(session.getRunNumber() <= session.getMaxAttempts()) {
-                        if(gui && cf != null) {
+                        if(control) {
                             SwingUtilities.invokeLater(() -> {
                                 cf.commitScore();
                             });
@@ -713,7 +757,7 @@ public class SocketInterface extends Thread {
                             session.completeRun(true);
                         }
                         if(session.isFinished()) {
-                            c.setState(CompetitionState.POST_RUN);
+                            track.setState(CompetitionState.POST_RUN);
                         }
                         send("OK");
                     } else {
@@ -721,11 +765,11 @@ public class SocketInterface extends Thread {
                     }
                     break;
                 case "discard-score":
-                    session = c.getSession();
-                    if(c.getState() < CompetitionState.RUN) {
+                    session = track.getSession();
+                    if(track.getState() < CompetitionState.RUN) {
                         send("ERROR must be in RUN or POST-RUN state");
                     } else if(session.getRunNumber() <= session.getMaxAttempts()) {
-                        if(gui && cf != null) {
+                        if(control) {
                             SwingUtilities.invokeLater(() -> {
                                 cf.discardScore();
                             });
@@ -733,7 +777,7 @@ public class SocketInterface extends Thread {
                             session.completeRun(false);
                         }
                         if(session.isFinished()) {
-                            c.setState(CompetitionState.POST_RUN);
+                            track.setState(CompetitionState.POST_RUN);
                         }
                         send("OK");
                     } else {
@@ -743,9 +787,9 @@ public class SocketInterface extends Thread {
                 case "add-time":
                     if(tokens.length == 2) {
                         try {
-                            if(c.getState() == CompetitionState.SETUP ||
-                                    c.getState() == CompetitionState.RUN) {
-                                c.getSession().addTimeSeconds(Long.parseLong(tokens[1]));
+                            if(track.getState() == CompetitionState.SETUP ||
+                                    track.getState() == CompetitionState.RUN) {
+                                track.getSession().addTimeSeconds(Long.parseLong(tokens[1]));
                                 send("OK");
                             } else {
                                 send("ERROR not in SETUP nor RUN mode");
@@ -763,7 +807,8 @@ public class SocketInterface extends Thread {
                     if(tokens.length == 2) {
                         try {
                             int displayMode = Integer.parseInt(tokens[1]);
-                            ControlCenter.triggerEvent(UserEvent.DISPLAY_MODE_CHANGE, displayMode);
+                            ControlCenter.triggerEvent(Event.index(
+                                    UserEvent.DISPLAY_MODE_CHANGE, displayMode));
                             send("OK");
                         } catch(Exception e) {
                             Log.d(0, "SocketInterface$ClientHandler.handleCommand: " +
@@ -778,7 +823,8 @@ public class SocketInterface extends Thread {
                     if(tokens.length == 2) {
                         try {
                             int displayRank = Integer.parseInt(tokens[1]);
-                            ControlCenter.triggerEvent(UserEvent.DISPLAY_RANK_START, displayRank);
+                            ControlCenter.triggerEvent(Event.index(
+                                    UserEvent.DISPLAY_RANK_START, displayRank));
                             send("OK");
                         } catch(Exception e) {
                             Log.d(0, "SocketInterface$ClientHandler.handleCommand: " +
@@ -816,7 +862,7 @@ public class SocketInterface extends Thread {
                 case "add-team-annotation":
                     tokens = line.trim().split("\\s+", 3);
                     if(tokens.length == 3) {
-                        Data.lock().writeLock().lock();
+                        Data.lock().lockWrite();
                         try {
                             int teamID = Integer.parseInt(tokens[1]);
                             c.getTeamByID(teamID).addAnnotation(tokens[2]);
@@ -829,7 +875,7 @@ public class SocketInterface extends Thread {
                                      e);
                             send("ERROR");
                         } finally {
-                            Data.lock().writeLock().unlock();
+                            Data.lock().unlockWrite();
                         }
                     } else {
                         send("ERROR");
@@ -838,7 +884,7 @@ public class SocketInterface extends Thread {
                 case "remove-team-annotation":
                     tokens = line.trim().split("\\s+", 3);
                     if(tokens.length == 3) {
-                        Data.lock().writeLock().lock();
+                        Data.lock().lockWrite();
                         try {
                             int teamID = Integer.parseInt(tokens[1]);
                             c.getTeamByID(teamID).removeAnnotation(tokens[2]);
@@ -851,7 +897,7 @@ public class SocketInterface extends Thread {
                                      e);
                             send("ERROR");
                         } finally {
-                            Data.lock().writeLock().unlock();
+                            Data.lock().unlockWrite();
                         }
                     } else {
                         send("ERROR");
@@ -950,6 +996,7 @@ public class SocketInterface extends Thread {
                         overlay = cc.getDisplayFrame().getOverlayHandle(tokens[1]);
                         if(overlay != null) {
                             overlay.rescaleWidth(px);
+                            cc.getDisplayFrame().invalidate();
                             send("OK");
                         } else {
                             send("ERROR");
@@ -965,6 +1012,7 @@ public class SocketInterface extends Thread {
                         overlay = cc.getDisplayFrame().getOverlayHandle(tokens[1]);
                         if(overlay != null) {
                             overlay.rescaleHeight(px);
+                            cc.getDisplayFrame().invalidate();
                             send("OK");
                         } else {
                             send("ERROR");
@@ -981,6 +1029,7 @@ public class SocketInterface extends Thread {
                                     Float.parseFloat(tokens[2]),
                                     Float.parseFloat(tokens[3])
                             );
+                            cc.getDisplayFrame().invalidate();
                             send("OK");
                         } else {
                             send("ERROR");
@@ -1034,7 +1083,45 @@ public class SocketInterface extends Thread {
             }
         }
         
+        /**
+         * Every monitoring client gets its own event queue so that a
+         * stalled client does not hold up the others. A client that falls
+         * so far behind that events were dropped has lost track of the
+         * state and is disconnected, it resyncs when it reconnects.
+         */
+        private synchronized void subscribe() {
+            if(subscription == null && !stop) {
+                subscription = ControlCenter.getEventBus().subscribe(
+                        "SocketInterface-" + s.getInetAddress().getHostAddress() +
+                        ":" + s.getPort(), this::monitorEvent,
+                        EventBus.DROP_OLDEST, MONITOR_QUEUE_CAPACITY);
+            }
+        }
+        
+        private synchronized void unsubscribe() {
+            ControlCenter.getEventBus().unsubscribe(subscription);
+            subscription = null;
+        }
+        
+        private void monitorEvent(Event e) {
+            EventBus.Subscription sub = subscription;
+            if(sub == null) {
+                return;
+            }
+            if(sub.getDroppedCount() > 0) {
+                Log.err("SocketInterface$ClientHandler: " + sub.getName() +
+                        " fell behind and lost events, disconnecting");
+                disconnect();
+                return;
+            }
+            String line = toMonitorLine(e);
+            if(line != null) {
+                monitor(line);
+            }
+        }
+        
         public void disconnect() {
+            unsubscribe();
             if(!gui && local) {
                 c.removeStateChangeHooks(stateChangeCallback);
             }